@@ -359,7 +359,10 @@ function like(type, id) {
 	xhttp.open("POST", "like?type=" + type + "&id=" + id, false);
 	xhttp.send();
 
-	if (result == 1) {
+	// the new state: 1 if liked, 0 if not, nothing if the operation failed
+	var state = (result === undefined) ? NaN : parseInt(result, 10);
+
+	if (state === 0 || state === 1) {
 		if (token == "mypage") {
 			if (type == "hotel") {
 				reloadCard("favoriteHotels");
@@ -593,6 +596,22 @@ function getLoginInformation() {
     xhttp.send();
 }
 
+function loadMyPage() {
+	var xhttp = new XMLHttpRequest();
+	xhttp.onreadystatechange = function() {
+    	if (this.readyState == 4 && this.status == 200) {
+    		var panels = JSON.parse(this.responseText);
+    		document.getElementById("loginInformation").innerHTML = panels["loginInformation"];
+    		["myReviews", "favoriteHotels", "likedReviews", "expediaLinks"].forEach(function(type) {
+    			document.getElementById(type).innerHTML = panels[type];
+    			hideShowButton(type);
+    		});
+    	}
+    };
+    xhttp.open("POST", "mypage?type=all", true);
+    xhttp.send();
+}
+
 function clearAll(type) {
 	swal({
 		title: "Are you sure?",
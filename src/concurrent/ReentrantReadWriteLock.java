@@ -1,7 +1,7 @@
 package concurrent;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 /**
  * A custom reentrant read/write lock that allows:
@@ -10,17 +10,30 @@ import java.util.Map;
  * 3) A writer is allowed to acquire a read lock while holding the write lock.
  * 4) A writer is allowed to acquire another write lock while holding the write lock.
  * 5) A reader can not acquire a write lock while holding a read lock.
+ *
+ * The lock state is one atomic int: the upper 16 bits count the read locks of all threads, the lower 16 bits
+ * count the write locks of the writer. Each thread keeps its own read lock count in a ThreadLocal, so acquiring
+ * an uncontended read lock is a single compare-and-set. Blocked threads wait in the queue of an
+ * AbstractQueuedSynchronizer, which wakes only the threads that can proceed.
+ * As before, readers do not wait for queued writers, only for a writer that holds the lock.
+ *
+ * Readers that only look at data may also read optimistically, without taking the lock at all:
+ * <pre>
+ *     long stamp = lock.tryOptimisticRead();
+ *     ... read ...
+ *     if (!lock.validate(stamp)) { ... read again under lockRead() ... }
+ * </pre>
+ * The stamp is a version that is odd while a writer holds the lock and changes whenever a writer takes or
+ * releases it, so validate() fails if a write may have overlapped the read.
  */
 public class ReentrantReadWriteLock {
-    private Map<Long, Integer> reader;
-    private Map<Long, Integer> writer;
+    private final Sync sync;
 
     /**
-     * Constructor for ReentrantReadWriteLock. Initialize the data structures and logger.
+     * Constructor for ReentrantReadWriteLock.
      */
     public ReentrantReadWriteLock() {
-        reader = new HashMap<>();
-        writer = new HashMap<>();
+        sync = new Sync();
     }
 
     /**
@@ -28,12 +41,8 @@ public class ReentrantReadWriteLock {
      *
      * @return boolean
      */
-    public synchronized boolean isReadLockHeldByCurrentThread() {
-        long currentThreadId = Thread.currentThread().getId();
-
-        if (reader.containsKey(currentThreadId)) return true;
-
-        return false;
+    public boolean isReadLockHeldByCurrentThread() {
+        return sync.getReadHoldCount() > 0;
     }
 
     /**
@@ -41,143 +50,243 @@ public class ReentrantReadWriteLock {
      *
      * @return boolean
      */
-    public synchronized boolean isWriteLockHeldByCurrentThread() {
-        long currentThreadId = Thread.currentThread().getId();
-
-        if (writer.containsKey(currentThreadId)) return true;
-
-        return false;
+    public boolean isWriteLockHeldByCurrentThread() {
+        return sync.isHeldExclusively();
     }
 
     /**
      * Non-blocking method that attempts to acquire the read lock. Returns true
      * if successful.
-     * Checks conditions (whether it can acquire the read lock), and if they are true,
-     * updates readers info.
      *
      * Note that if conditions are false (can not acquire the read lock at the moment), this method
      * does NOT wait, just returns false
      *
      * Thread can only receive a readlock when there is no writelock or the writelock is currently hold by this thread.
-     * If this thread currently hold a readlock, add the count of the readlock of this thread.
-     * If not, add a new thread id to the map to show that this thread holds a readlock.
      *
      * @return boolean
      */
-    public synchronized boolean tryAcquiringReadLock() {
-        long currentThreadId = Thread.currentThread().getId();
-
-        if (writer.size() == 0 || isWriteLockHeldByCurrentThread()){
-            if (isReadLockHeldByCurrentThread()) {
-                int count = reader.get(currentThreadId);
-                reader.put(currentThreadId, count + 1);
-            }
-            else {
-                reader.put(currentThreadId, 1);
-            }
-            return true;
-        }
-
-        return false;
+    public boolean tryAcquiringReadLock() {
+        return sync.tryReadLock();
     }
 
     /**
      * Non-blocking method that attempts to acquire the write lock. Returns true
      * if successful.
-     * Checks conditions (whether it can acquire the write lock), and if they are true,
-     * updates writers info.
      *
      * Note that if conditions are false (can not acquire the write lock at the moment), this method
      * does NOT wait, just returns false
      *
-     * Thread can only receive a writelock when there is no readlock.
-     * If this thread currently hold a writelock, add the count of the writelock of this thread.
-     * If not, add a new thread id to the map to show that this thread holds a writelock.
+     * Thread can only receive a writelock when there is no readlock, or when it holds the writelock already.
      *
      * @return boolean
      */
-    public synchronized boolean tryAcquiringWriteLock() {
-        long currentThreadId = Thread.currentThread().getId();
+    public boolean tryAcquiringWriteLock() {
+        return sync.tryWriteLock();
+    }
 
-        if (reader.size() == 0) {
-            if (writer.size() == 0) {
-                writer.put(currentThreadId, 1);
-                return true;
-            }
-            else if (isWriteLockHeldByCurrentThread()) {
-                int count = writer.get(currentThreadId);
-                writer.put(currentThreadId, count + 1);
-                return true;
-            }
-        }
+    /**
+     * Return a stamp for an optimistic read, or 0 if a writer holds the lock.
+     * Does not write to shared memory.
+     *
+     * @return long - stamp to pass to validate
+     */
+    public long tryOptimisticRead() {
+        long version = sync.version;
 
-        return false;
+        return ((version & 1) == 0) ? version : 0;
+    }
+
+    /**
+     * Return true if no writer has taken the lock since the stamp was returned by tryOptimisticRead,
+     * so the values read since then are consistent.
+     *
+     * @param stamp
+     * @return boolean
+     */
+    public boolean validate(long stamp) {
+        VarHandle.acquireFence();
+
+        return stamp != 0 && sync.version == stamp;
     }
 
     /**
      * Blocking method that will return only when the read lock has been acquired.
-     * Calls tryAcquiringReadLock, and as long as it returns false, waits.
-     * Catches InterruptedException.
+     * Not interruptible, as before.
      */
-    public synchronized void lockRead() {
-        while (!tryAcquiringReadLock()) {
-            try {
-                this.wait();
-            }
-            catch (InterruptedException e) {
-                System.out.println("Exception while running the lockRead: " + e);
-            }
-        }
+    public void lockRead() {
+        sync.acquireShared(1);
     }
 
     /**
      * Releases the read lock held by the calling thread. Other threads might still be holding read locks.
-     * If this thread holds multi readlocks then minus the count in the map.
-     * If no more readers after unlocking, calls notifyAll().
+     * Does nothing if the calling thread holds no read lock.
+     * If no more locks are held after unlocking, wakes the waiting threads.
      */
-    public synchronized void unlockRead() {
-        long currentThreadId = Thread.currentThread().getId();
-
+    public void unlockRead() {
         if (isReadLockHeldByCurrentThread()) {
-            int count = reader.get(currentThreadId);
-            if (count > 1) reader.put(currentThreadId, count - 1);
-            else if (count == 1) reader.remove(currentThreadId);
+            sync.releaseShared(1);
         }
-
-        if (reader.size() == 0) notifyAll();
     }
 
     /**
      * Blocking method that will return only when the write lock has been acquired.
-     * Calls tryAcquiringWriteLock, and as long as it returns false, waits.
-     * Catches InterruptedException.
+     * Not interruptible, as before.
      */
-    public synchronized void lockWrite() {
-        while (!tryAcquiringWriteLock()) {
-            try {
-                this.wait();
-            }
-            catch (InterruptedException e) {
-                System.out.println("Exception while running the lockWrite: " + e);
-            }
-        }
+    public void lockWrite() {
+        sync.acquire(1);
     }
 
     /**
      * Releases the write lock held by the calling thread. The calling thread may continue to hold a read lock.
-     * If this thread holds multi writelocks then minus the count in the map.
-     * If the number of writers becomes 0, calls notifyAll.
+     * Does nothing if the calling thread holds no write lock.
+     * If the number of write locks becomes 0, wakes the waiting threads.
      */
+    public void unlockWrite() {
+        if (isWriteLockHeldByCurrentThread()) {
+            sync.release(1);
+        }
+    }
 
-    public synchronized void unlockWrite() {
-        long currentThreadId = Thread.currentThread().getId();
+    /**
+     * The lock state and wait queue.
+     */
+    private static final class Sync extends AbstractQueuedSynchronizer {
+        private static final int SHARED_SHIFT = 16;
+        private static final int SHARED_UNIT = 1 << SHARED_SHIFT;
+        private static final int MAX_COUNT = (1 << SHARED_SHIFT) - 1;
 
-        if (isWriteLockHeldByCurrentThread()) {
-            int count = writer.get(currentThreadId);
-            if (count > 1) writer.put(currentThreadId, count - 1);
-            else if (count == 1) writer.remove(currentThreadId);
+        /** Read locks held by each thread. */
+        private final ThreadLocal<int[]> readHolds = ThreadLocal.withInitial(() -> new int[1]);
+
+        /**
+         * Odd while a writer holds the lock, incremented when it takes and when it releases the lock.
+         * Starts at 2 so that no stamp is 0.
+         */
+        private volatile long version = 2;
+
+        /**
+         * Return the number of read locks held by all threads.
+         *
+         * @param state
+         * @return int
+         */
+        private static int sharedCount(int state) {
+            return state >>> SHARED_SHIFT;
+        }
+
+        /**
+         * Return the number of write locks held by the writer.
+         *
+         * @param state
+         * @return int
+         */
+        private static int exclusiveCount(int state) {
+            return state & MAX_COUNT;
+        }
+
+        /**
+         * Return the number of read locks held by the current thread.
+         *
+         * @return int
+         */
+        private int getReadHoldCount() {
+            return readHolds.get()[0];
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            return tryWriteLock();
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            int next = getState() - releases;
+            boolean free = exclusiveCount(next) == 0;
+
+            if (free) {
+                setExclusiveOwnerThread(null);
+                version++;
+            }
+            setState(next);
+
+            return free;
         }
 
-        if (writer.size() == 0) notifyAll();
+        @Override
+        protected int tryAcquireShared(int acquires) {
+            return tryReadLock() ? 1 : -1;
+        }
+
+        @Override
+        protected boolean tryReleaseShared(int releases) {
+            readHolds.get()[0]--;
+
+            for (;;) {
+                int state = getState();
+                int next = state - SHARED_UNIT;
+                if (compareAndSetState(state, next)) {
+                    return next == 0;
+                }
+            }
+        }
+
+        /**
+         * Acquire a read lock without waiting, unless another thread holds the write lock.
+         *
+         * @return boolean - true if acquired
+         */
+        private boolean tryReadLock() {
+            Thread current = Thread.currentThread();
+
+            for (;;) {
+                int state = getState();
+                if (exclusiveCount(state) != 0 && getExclusiveOwnerThread() != current) {
+                    return false;
+                }
+                if (sharedCount(state) == MAX_COUNT) {
+                    throw new Error("Maximum lock count exceeded");
+                }
+                if (compareAndSetState(state, state + SHARED_UNIT)) {
+                    readHolds.get()[0]++;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Acquire a write lock without waiting. The writer may hold read locks of its own.
+         *
+         * @return boolean - true if acquired
+         */
+        private boolean tryWriteLock() {
+            Thread current = Thread.currentThread();
+            int state = getState();
+
+            if (state != 0) {
+                if (exclusiveCount(state) == 0 || getExclusiveOwnerThread() != current) {
+                    return false;
+                }
+                if (exclusiveCount(state) == MAX_COUNT) {
+                    throw new Error("Maximum lock count exceeded");
+                }
+                setState(state + 1);
+                return true;
+            }
+
+            if (!compareAndSetState(0, 1)) {
+                return false;
+            }
+            setExclusiveOwnerThread(current);
+            version++;
+            // the writes under the lock must not become visible before the version does
+            VarHandle.storeStoreFence();
+
+            return true;
+        }
     }
 }
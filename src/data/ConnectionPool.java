@@ -0,0 +1,499 @@
+package data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of JDBC connections.
+ * Connections are borrowed with getConnection() and go back to the pool when the borrower closes them,
+ * together with every statement that was created on them. At most maxSize connections are lent out at once,
+ * other borrowers wait up to acquireTimeout milliseconds. Idle connections are validated before they are
+ * reused, idle connections above minSize are evicted after idleTimeout, and connections held longer than
+ * leakThreshold are reported with the current stack trace of the borrowing thread. Recording the stack trace of
+ * every borrow is expensive, so it is only done when pool.leakDebug is true.
+ * The housekeeper also probes the database every healthCheckInterval; isHealthy() tells whether the last probe,
+ * or the last attempt to open a connection, succeeded.
+ */
+public class ConnectionPool {
+    private static final long VALIDATION_INTERVAL = 1000;
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    private final String uri;
+    private final Properties login;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final long leakThreshold;
+    private final boolean leakDebug;
+    private final long healthCheckInterval;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idle;
+    private final Set<PooledConnection> borrowed;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    private volatile boolean healthy;
+
+    /**
+     * Constructor. Reads the optional pool settings from the database properties:
+     * pool.minSize, pool.maxSize, pool.acquireTimeout, pool.idleTimeout and pool.leakThreshold (milliseconds),
+     * pool.healthCheckInterval (milliseconds) and pool.leakDebug (true or false).
+     *
+     * @param uri - jdbc uri of the database
+     * @param login - user and password properties
+     * @param config - database properties
+     */
+    public ConnectionPool(String uri, Properties login, Properties config) {
+        this.uri = uri;
+        this.login = login;
+        this.maxSize = Math.max(1, getInt(config, "pool.maxSize", 10));
+        this.minSize = Math.min(this.maxSize, Math.max(0, getInt(config, "pool.minSize", 2)));
+        this.acquireTimeout = getInt(config, "pool.acquireTimeout", 5000);
+        this.idleTimeout = getInt(config, "pool.idleTimeout", 600000);
+        this.leakThreshold = getInt(config, "pool.leakThreshold", 30000);
+        this.leakDebug = Boolean.parseBoolean(config.getProperty("pool.leakDebug", "false").trim());
+        this.healthCheckInterval = getInt(config, "pool.healthCheckInterval", 30000);
+        this.healthy = true;
+
+        this.permits = new Semaphore(this.maxSize, true);
+        this.idle = new LinkedBlockingDeque<>();
+        this.borrowed = ConcurrentHashMap.newKeySet();
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long period = Math.max(1000, Math.min(this.healthCheckInterval, this.idleTimeout / 2));
+        this.housekeeper.scheduleWithFixedDelay(this::housekeeping, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return an integer setting from the properties, or the default value if it is missing or invalid.
+     *
+     * @param config
+     * @param key
+     * @param defaultValue
+     * @return int
+     */
+    static int getInt(Properties config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e) {
+                System.out.println("Invalid value of " + key + ": " + value);
+            }
+        }
+
+        return defaultValue;
+    }
+
+    /**
+     * Borrow a connection from the pool. Closing the returned connection gives it back to the pool.
+     *
+     * @return Connection
+     * @throws SQLException if the pool is exhausted for longer than acquireTimeout or the database is unreachable
+     */
+    public Connection getConnection() throws SQLException {
+        return getConnection(acquireTimeout);
+    }
+
+    /**
+     * Borrow a connection from the pool, waiting at most timeout milliseconds for one to be returned.
+     *
+     * @param timeout - milliseconds to wait if all connections are lent out, 0 to not wait
+     * @return Connection
+     * @throws ExhaustedException if all connections are still lent out after timeout
+     * @throws SQLException if the database is unreachable
+     */
+    public Connection getConnection(long timeout) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been shut down.");
+        }
+
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new ExhaustedException("Timed out after " + timeout + " ms waiting for a database connection "
+                        + "(" + borrowed.size() + " of " + maxSize + " in use).");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(uri, login));
+                healthy = true;
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowerThread = Thread.currentThread();
+            pooled.borrower = (leakThreshold > 0 && leakDebug) ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+
+            return pooled.lease();
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a result set that gives its connection back to the pool when it is closed.
+     * Used by methods that hand a live result set to their caller.
+     *
+     * @param connection - the borrowed connection the result set was read from
+     * @param result
+     * @return ResultSet
+     */
+    public static ResultSet releaseOnClose(Connection connection, ResultSet result) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                try {
+                    result.close();
+                }
+                finally {
+                    connection.close();
+                }
+                return null;
+            }
+
+            try {
+                return method.invoke(result, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, handler);
+    }
+
+    /**
+     * Return true if the last health probe, or the last attempt to open a connection, succeeded.
+     *
+     * @return boolean
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Take the pool out of use until the next health probe succeeds, e.g. after a borrower could not connect.
+     */
+    public void markUnhealthy() {
+        healthy = false;
+    }
+
+    /**
+     * Return the number of connections currently lent out.
+     *
+     * @return int
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * Return the number of open connections waiting in the pool.
+     *
+     * @return int
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Close all idle connections and stop the housekeeper. Borrowed connections are closed when they are returned.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.closeQuietly();
+        }
+    }
+
+    /**
+     * Take the most recently used idle connection, validating it if it has been idle for a while.
+     *
+     * @return PooledConnection - or null if no usable idle connection exists
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL || pooled.isValid()) {
+                return pooled;
+            }
+            pooled.closeQuietly();
+        }
+
+        return null;
+    }
+
+    /**
+     * Give a connection back to the pool, closing the statements opened on it.
+     * A connection that can not be reset is discarded.
+     *
+     * @param pooled
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+
+        try {
+            pooled.closeStatements();
+
+            if (closed || pooled.connection.isClosed()) {
+                pooled.closeQuietly();
+            }
+            else {
+                if (!pooled.connection.getAutoCommit()) {
+                    pooled.connection.rollback();
+                    pooled.connection.setAutoCommit(true);
+                }
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        }
+        catch (SQLException e) {
+            System.out.println("Discarding broken database connection: " + e);
+            pooled.closeQuietly();
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Periodic task: evict connections idle for longer than idleTimeout, keep at least minSize connections open,
+     * probe the database and report connections that have been borrowed for longer than leakThreshold.
+     */
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+
+        for (PooledConnection pooled : idle) {
+            if (idle.size() + borrowed.size() <= minSize) {
+                break;
+            }
+            if (now - pooled.lastUsed > idleTimeout && idle.removeLastOccurrence(pooled)) {
+                pooled.closeQuietly();
+            }
+        }
+
+        try {
+            while (!closed && idle.size() + borrowed.size() < minSize) {
+                PooledConnection pooled = new PooledConnection(DriverManager.getConnection(uri, login));
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            }
+        }
+        catch (SQLException e) {
+            System.out.println("Unable to open pooled database connection: " + e);
+        }
+
+        if (!closed) {
+            boolean wasHealthy = healthy;
+            healthy = probe();
+            if (healthy != wasHealthy) {
+                System.out.println("Database " + uri + (healthy ? " is reachable again." : " is unreachable."));
+            }
+        }
+
+        if (leakThreshold > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                    pooled.leakReported = true;
+                    System.out.println("Possible connection leak: connection held for "
+                            + (now - pooled.borrowedAt) + " ms by " + pooled.borrowerThread.getName() + ".");
+                    if (pooled.borrower != null) {
+                        pooled.borrower.printStackTrace(System.out);
+                    }
+                    else {
+                        for (StackTraceElement element : pooled.borrowerThread.getStackTrace()) {
+                            System.out.println("\tat " + element);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if the database answers: validates an idle connection, or opens a new one if none is idle.
+     *
+     * @return boolean
+     */
+    private boolean probe() {
+        PooledConnection pooled = idle.pollFirst();
+
+        if (pooled != null) {
+            if (pooled.isValid()) {
+                idle.offerFirst(pooled);
+                return true;
+            }
+            pooled.closeQuietly();
+        }
+
+        try (Connection connection = DriverManager.getConnection(uri, login)) {
+            return connection.isValid(VALIDATION_TIMEOUT);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Thrown when every connection of the pool is lent out for longer than the borrower is willing to wait.
+     * The database itself may be fine.
+     */
+    public static class ExhaustedException extends SQLException {
+        /**
+         * Constructor.
+         *
+         * @param message
+         */
+        public ExhaustedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool, with the bookkeeping of its current borrower.
+     */
+    private class PooledConnection {
+        private final Connection connection;
+        private final List<Statement> statements;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile Thread borrowerThread;
+        private volatile Throwable borrower;
+        private volatile boolean leakReported;
+
+        /**
+         * Constructor.
+         *
+         * @param connection - physical connection
+         */
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new ArrayList<>();
+        }
+
+        /**
+         * Return a handle for one borrower. Closing the handle returns the connection to the pool,
+         * and any later use of the same handle fails instead of touching the next borrower's connection.
+         *
+         * @return Connection
+         */
+        private Connection lease() {
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean released = false;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    String name = method.getName();
+
+                    if (name.equals("close")) {
+                        if (!released) {
+                            released = true;
+                            release(PooledConnection.this);
+                        }
+                        return null;
+                    }
+                    else if (name.equals("isClosed")) {
+                        return released || connection.isClosed();
+                    }
+                    else if (released) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+
+                    try {
+                        Object result = method.invoke(connection, args);
+                        if (result instanceof Statement) {
+                            statements.add((Statement) result);
+                        }
+                        return result;
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            };
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, handler);
+        }
+
+        /**
+         * Return true if the connection still answers within the validation timeout.
+         *
+         * @return boolean
+         */
+        private boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT);
+            }
+            catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Close every statement the last borrower opened on this connection.
+         */
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                }
+                catch (SQLException e) {
+                    System.out.println(e);
+                }
+            }
+            statements.clear();
+        }
+
+        /**
+         * Close the physical connection, ignoring errors.
+         */
+        private void closeQuietly() {
+            try {
+                connection.close();
+            }
+            catch (SQLException e) {
+                System.out.println(e);
+            }
+        }
+    }
+}
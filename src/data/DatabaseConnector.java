@@ -5,18 +5,23 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.InvalidPropertiesFormatException;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is designed to test your database configuration. You need to have
  * a database.properties file with username, password, database, and hostname.
+ * An optional comma separated list of read replica hostnames can be given as
+ * replicas, see getReadConnection().
  */
 public class DatabaseConnector {
 
@@ -29,6 +34,24 @@ public class DatabaseConnector {
 	/** Properties with username and password for connecting to database. */
 	private final Properties login;
 
+	/** Properties loaded from the database properties file. */
+	private final Properties config;
+
+	/** Pool of connections shared by every caller of getConnection(). */
+	private final ConnectionPool pool;
+
+	/** Pools of the read replicas, empty if no replicas are configured. */
+	private final List<ConnectionPool> replicas;
+
+	/** Where the next search for a replica starts, to spread ties. */
+	private final AtomicInteger nextReplica;
+
+	/** Milliseconds after a write during which reads of the same user go to the primary. */
+	private final long writeFence;
+
+	/** Time of the last write of each user reported by markWrite(), for the writes within writeFence. */
+	private final ConcurrentHashMap<String, Long> lastWrites;
+
 	/**
 	 * Creates a connector from a "database.properties" file located in the
 	 * current working directory.
@@ -50,7 +73,7 @@ public class DatabaseConnector {
 	public DatabaseConnector(String configPath) throws FileNotFoundException, IOException {
 
 		// Try to load the configuration from file
-		Properties config = loadConfig(configPath);
+		config = loadConfig(configPath);
 
 		// Create database URI in proper format
 		uri = String.format("jdbc:mysql://%s/%s", config.getProperty("hostname"), config.getProperty("database"));
@@ -60,6 +83,26 @@ public class DatabaseConnector {
 		login = new Properties();
 		login.put("user", config.getProperty("username"));
 		login.put("password", config.getProperty("password"));
+
+		// Let the driver send JDBC batches as multi-row statements
+		login.put("rewriteBatchedStatements", "true");
+
+		// Create connection pool, sized by the optional pool.* properties
+		pool = new ConnectionPool(uri, login, config);
+
+		// Create a pool per read replica, using the same database and login
+		replicas = new ArrayList<>();
+		for (String hostname : config.getProperty("replicas", "").split(",")) {
+			if (!hostname.trim().isEmpty()) {
+				String replica = String.format("jdbc:mysql://%s/%s", hostname.trim(), config.getProperty("database"));
+				System.out.println("replica = " + replica);
+				replicas.add(new ConnectionPool(replica, login, config));
+			}
+		}
+
+		nextReplica = new AtomicInteger();
+		writeFence = getInt("replicas.writeFence", 1000);
+		lastWrites = new ConcurrentHashMap<>();
 	}
 
 	/**
@@ -94,14 +137,183 @@ public class DatabaseConnector {
 	}
 
 	/**
-	 * Attempts to connect to database using loaded configuration.
+	 * Returns an optional integer setting from the database properties file.
+	 *
+	 * @param key name of the setting
+	 * @param defaultValue value used if the setting is missing or invalid
+	 * @return setting value
+	 */
+	public int getInt(String key, int defaultValue) {
+		return ConnectionPool.getInt(config, key, defaultValue);
+	}
+
+	/**
+	 * Returns an optional setting from the database properties file.
+	 *
+	 * @param key name of the setting
+	 * @param defaultValue value used if the setting is missing
+	 * @return setting value
+	 */
+	public String getString(String key, String defaultValue) {
+		return config.getProperty(key, defaultValue).trim();
+	}
+
+	/**
+	 * Borrows a connection from the connection pool. Closing the connection
+	 * returns it to the pool.
 	 *
 	 * @return database connection
 	 * @throws SQLException if unable to establish database connection
 	 */
 	public Connection getConnection() throws SQLException {
-		Connection dbConnection = DriverManager.getConnection(uri, login);
-		return dbConnection;
+		return pool.getConnection();
+	}
+
+	/**
+	 * Borrows a connection for a read that may be slightly stale and does not
+	 * follow a write of its caller, see getReadConnection(long).
+	 *
+	 * @return database connection
+	 * @throws SQLException if unable to establish database connection
+	 */
+	public Connection getReadConnection() throws SQLException {
+		return getReadConnection(0);
+	}
+
+	/**
+	 * Borrows a connection for a read that may be slightly stale. Picks the
+	 * least loaded healthy replica, or the primary if no replica is configured,
+	 * no replica is healthy or has a free connection, or the caller wrote
+	 * within replicas.writeFence milliseconds, so callers see their own writes.
+	 * A replica whose connections are all in use is skipped for this read only,
+	 * without waiting. A replica that fails to connect is taken out of rotation
+	 * until the health probe of its pool succeeds again, see
+	 * pool.healthCheckInterval.
+	 *
+	 * @param lastWrite time of the last write of the caller, see getLastWrite()
+	 * @return database connection
+	 * @throws SQLException if unable to establish database connection
+	 */
+	public Connection getReadConnection(long lastWrite) throws SQLException {
+		long now = System.currentTimeMillis();
+
+		if (replicas.isEmpty() || now - lastWrite < writeFence) {
+			return getConnection();
+		}
+
+		// Least loaded healthy replica, trying the next one if it is busy or fails
+		boolean[] tried = new boolean[replicas.size()];
+		int best;
+		while ((best = pickReplica(tried)) >= 0) {
+			tried[best] = true;
+			try {
+				return replicas.get(best).getConnection(0);
+			}
+			catch (ConnectionPool.ExhaustedException e) {
+				// busy, not broken
+			}
+			catch (SQLException e) {
+				replicas.get(best).markUnhealthy();
+				System.out.println("Replica " + best + " unavailable. " + e.getMessage());
+			}
+		}
+
+		return getConnection();
+	}
+
+	/**
+	 * Returns the index of the least loaded healthy replica that has not been
+	 * tried yet, or -1 if there is none. The search starts round-robin so that
+	 * equally loaded replicas share the reads.
+	 *
+	 * @param tried replicas already tried for this read
+	 * @return replica index
+	 */
+	private int pickReplica(boolean[] tried) {
+		int start = nextReplica.getAndIncrement();
+		int best = -1;
+
+		for (int i = 0; i < replicas.size(); i++) {
+			int index = Math.floorMod(start + i, replicas.size());
+
+			if (!tried[index] && replicas.get(index).isHealthy() && (best < 0
+					|| replicas.get(index).getActiveCount() < replicas.get(best).getActiveCount())) {
+				best = index;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Records that a user is sending a write to the primary, so that the reads
+	 * of that user go to the primary until the replicas have had time to catch
+	 * up. Forgets the writes that are older than replicas.writeFence.
+	 *
+	 * @param username user that writes
+	 */
+	public void markWrite(String username) {
+		if (replicas.isEmpty() || username == null) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		lastWrites.values().removeIf(time -> now - time >= writeFence);
+		lastWrites.put(username, now);
+	}
+
+	/**
+	 * Returns the time of the last write of a user within replicas.writeFence,
+	 * or 0 if there is none.
+	 *
+	 * @param username user that reads
+	 * @return time in milliseconds
+	 */
+	public long getLastWrite(String username) {
+		Long time = (username == null) ? null : lastWrites.get(username);
+
+		return (time == null) ? 0 : time;
+	}
+
+	/**
+	 * Returns a result set that gives its connection back to the pool when
+	 * it is closed.
+	 *
+	 * @param connection connection the result set was read from
+	 * @param result result set to hand to the caller
+	 * @return result set
+	 */
+	public ResultSet releaseOnClose(Connection connection, ResultSet result) {
+		return ConnectionPool.releaseOnClose(connection, result);
+	}
+
+	/**
+	 * Returns the number of primary connections currently lent out.
+	 *
+	 * @return number of connections
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * Returns the number of open primary connections waiting in the pool.
+	 *
+	 * @return number of connections
+	 */
+	public int getIdleCount() {
+		return pool.getIdleCount();
+	}
+
+	/**
+	 * Closes all pooled connections.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+
+		for (ConnectionPool replica : replicas) {
+			replica.shutdown();
+		}
 	}
 
 	/**
@@ -174,6 +386,8 @@ public class DatabaseConnector {
 			else {
 				System.err.println("Unable to connect properly to database.");
 			}
+
+			test.shutdown();
 		}
 		catch (Exception e) {
 			System.err.println("Unable to connect properly to database.");
@@ -8,13 +8,18 @@ import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import hotelapp.*;
+import org.json.simple.JSONObject;
 
 /**
  * Handles all database-related actions. Uses singleton design pattern.
+ * Every method borrows a pooled connection; methods returning a ResultSet give it back
+ * when the caller closes the result set.
  *
  * @author BrianSung
  */
@@ -32,6 +37,24 @@ public class DatabaseHandler {
     /** Used to generate password hash salt for user. */
     private Random random;
 
+    /** Used to write login records behind the login request. */
+    private LoginRecorder logins;
+
+    /** Used to record call counts and latencies of the queries. */
+    private QueryStats stats;
+
+    /** Used to resolve hotel name searches to hotel ids. */
+    private final HotelNameIndex hotelNames = new HotelNameIndex();
+
+    /** Used to serve cities, API keys and hotel names and locations from memory. */
+    private ReferenceDataCache reference;
+
+    /** Used to answer hotel and review lists, from the database or from memory. */
+    private HotelRepository repository;
+
+    /** Used to drop the review page cursors of a hotel after its reviews change, counts the changes by hotel. */
+    private final Map<String, Long> reviewVersions = new ConcurrentHashMap<>();
+
     /**
      * Initializes a database handler for the Login example. Private constructor
      * forces all other classes to use singleton.
@@ -42,7 +65,18 @@ public class DatabaseHandler {
 
         try {
             db = new DatabaseConnector();
+            // registered first, so that whatever is created below is stopped even if a later step fails
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "database-shutdown"));
+            stats = new QueryStats(db.getInt("stats.slowQuery", 500));
             status = db.testConnection() ? setupTables() : Status.CONNECTION_FAILED;
+            if (status == Status.OK) {
+                indexHotelNames();
+                reference = new ReferenceDataCache(db, db.getInt("cache.refreshInterval", 300000));
+                repository = db.getString("repository", "jdbc").equals("memory")
+                        ? new MemoryHotelRepository(this, db) : new JdbcHotelRepository(this);
+            }
+            logins = new LoginRecorder(db, db.getInt("logins.bufferSize", 1000),
+                    db.getInt("logins.batchSize", 100), db.getInt("logins.flushInterval", 1000));
         }
         catch (FileNotFoundException e) {
             status = Status.MISSING_CONFIG;
@@ -50,6 +84,10 @@ public class DatabaseHandler {
         catch (IOException e) {
             status = Status.MISSING_VALUES;
         }
+        catch (SQLException e) {
+            status = Status.SQL_EXCEPTION;
+            System.out.println(e);
+        }
 
         if (status != Status.OK) {
             System.out.println(status.message());
@@ -65,6 +103,54 @@ public class DatabaseHandler {
         return singleton;
     }
 
+    /**
+     * Return the repository that answers hotel and review lists.
+     *
+     * @return HotelRepository
+     */
+    public HotelRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Writes the buffered login records and closes the pooled connections. Runs when the server stops.
+     * Skips the parts that were not created because the handler failed to start.
+     */
+    public void shutdown() {
+        if (reference != null) {
+            reference.shutdown();
+        }
+        if (logins != null) {
+            logins.shutdown();
+        }
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    /**
+     * Return the query statistics, connection pool usage and login buffer state as JSON.
+     *
+     * @return JSONObject
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getStats() {
+        JSONObject pool = new JSONObject();
+        pool.put("active", db.getActiveCount());
+        pool.put("idle", db.getIdleCount());
+
+        JSONObject loginBuffer = new JSONObject();
+        loginBuffer.put("pending", logins.getPendingCount());
+        loginBuffer.put("dropped", logins.getDroppedCount());
+
+        JSONObject json = new JSONObject();
+        json.put("queries", stats.toJSON());
+        json.put("pool", pool);
+        json.put("logins", loginBuffer);
+
+        return json;
+    }
+
     /**
      * Checks to see if a String is null or empty.
      * @param text - String to check
@@ -75,45 +161,156 @@ public class DatabaseHandler {
     }
 
     /**
-     * Checks if necessary table exists in database, and if not tries to create it.
+     * Execute a query on a pooled connection to the primary database.
+     * Used for reads that must see the latest writes, like the data of the current user.
+     * The connection goes back to the pool when the caller closes the returned result set.
+     *
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return ResultSet
+     * @throws SQLException
+     */
+    private ResultSet executeQuery(String name, String query, Object... parameters) throws SQLException {
+        return executeQuery(db.getConnection(), name, query, parameters);
+    }
+
+    /**
+     * Execute a query that may read slightly stale data on a read replica, see DatabaseConnector.
+     * The connection goes back to the pool when the caller closes the returned result set.
+     *
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return ResultSet
+     * @throws SQLException
+     */
+    private ResultSet executeReadQuery(String name, String query, Object... parameters) throws SQLException {
+        return executeQuery(db.getReadConnection(), name, query, parameters);
+    }
+
+    /**
+     * Execute a query that may read slightly stale data on a read replica, unless the user of the data session
+     * wrote within replicas.writeFence, see DatabaseConnector.
+     * The connection goes back to the pool when the caller closes the returned result set.
+     *
+     * @param ds - data session of the user
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return ResultSet
+     * @throws SQLException
+     */
+    private ResultSet executeReadQuery(DataSession ds, String name, String query, Object... parameters)
+            throws SQLException {
+        return executeQuery(db.getReadConnection(db.getLastWrite(ds.getElement("username"))), name, query,
+                parameters);
+    }
+
+    /**
+     * Execute a query on a borrowed connection, which goes back to the pool when the result set is closed.
+     * The execution time is recorded when the query returns, the rows when the result set is closed.
+     *
+     * @param connection - borrowed connection
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return ResultSet
+     * @throws SQLException
+     */
+    private ResultSet executeQuery(Connection connection, String name, String query, Object... parameters)
+            throws SQLException {
+        try {
+            PreparedStatement statement = connection.prepareStatement(query);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+
+            long start = System.nanoTime();
+            ResultSet result = statement.executeQuery();
+            stats.record(name, query, System.nanoTime() - start);
+
+            return stats.countRows(name, db.releaseOnClose(connection, result));
+        }
+        catch (SQLException e) {
+            stats.recordError(name);
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Execute an update on a pooled connection and return the connection to the pool.
+     *
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return int - update result
+     * @throws SQLException
+     */
+    private int executeUpdate(String name, String query, Object... parameters) throws SQLException {
+        try (Connection connection = db.getConnection()) {
+            return executeUpdate(connection, name, query, parameters);
+        }
+    }
+
+    /**
+     * Execute an update on the given connection, for statements that are part of a transaction.
+     *
+     * @param connection - active database connection
+     * @param name - query name for the query statistics
+     * @param query
+     * @param parameters - parameters bound in order
+     * @return int - update result
+     * @throws SQLException
+     */
+    private int executeUpdate(Connection connection, String name, String query, Object... parameters)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+
+            long start = System.nanoTime();
+            int rows = statement.executeUpdate();
+            stats.record(name, query, System.nanoTime() - start);
+            stats.addRows(name, rows);
+
+            return rows;
+        }
+        catch (SQLException e) {
+            stats.recordError(name);
+            throw e;
+        }
+    }
+
+    /**
+     * Brings the database schema up to date by applying pending migrations.
+     * A database without hotels is loaded with the hotel data after its tables have been created.
      *
      * @return Status
      */
     private Status setupTables() {
         Status status = Status.ERROR;
 
-        try (Connection connection = db.getConnection();Statement statement = connection.createStatement()) {
-            ResultSet res = statement.executeQuery(MySqlQuery.TABLES_SQL);
-            if (!res.next() || res.getInt("num") < 9) {
-                // Table missing, must create
-                System.out.println("Creating tables...");
-                statement.executeUpdate(MySqlQuery.CREATE_USER_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_HOTEL_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_REVIEW_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_EXPEDIA_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_LIKEREVIEW_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_LIKEHOTEL_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_LIKEEXPEDIA_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_APIKEYS_TABLE_SQL);
-                statement.executeUpdate(MySqlQuery.CREATE_LOGINS_TABLE_SQL);
+        try (Connection connection = db.getConnection()) {
+            boolean found = SchemaMigrator.tableExists(connection, "hotelapp_hotels");
+            int applied = migrations().migrate(connection);
+            boolean empty = !hasHotels(connection);
 
+            if (empty) {
                 // loading data
                 System.out.println("Loading data...");
                 loadData(connection);
-
-                // Check if create was successful
-                if (!statement.executeQuery(MySqlQuery.TABLES_SQL).next()) {
-                    status = Status.CREATE_FAILED;
-                }
-                else {
-                    status = Status.OK;
-                    db.testConnection();
-                }
+                rebuildHotelStats(connection);
+                db.testConnection();
             }
-            else {
+            else if (found && applied == 0) {
                 System.out.println("Tables found.");
-                status = Status.OK;
             }
+
+            System.out.println("Schema version " + SchemaMigrator.getVersion(connection) + ".");
+            status = Status.OK;
         }
         catch (Exception ex) {
             status = Status.CREATE_FAILED;
@@ -123,6 +320,130 @@ public class DatabaseHandler {
         return status;
     }
 
+    /**
+     * Return true if the hotel table has any rows.
+     *
+     * @param connection - active database connection
+     * @return boolean
+     * @throws SQLException
+     */
+    private boolean hasHotels(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeQuery("SELECT hotelid FROM hotelapp_hotels LIMIT 1;").next();
+        }
+    }
+
+    /**
+     * Return the schema migrations of hotelApp in version order.
+     * Add new migrations at the end, never change one that has been released.
+     *
+     * @return SchemaMigrator
+     */
+    private SchemaMigrator migrations() {
+        return new SchemaMigrator()
+                .add(1, "create tables",
+                        SchemaMigrator.sql(MySqlQuery.CREATE_USER_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_HOTEL_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_REVIEW_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_EXPEDIA_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_LIKEREVIEW_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_LIKEHOTEL_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_LIKEEXPEDIA_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_APIKEYS_TABLE_SQL),
+                        SchemaMigrator.sql(MySqlQuery.CREATE_LOGINS_TABLE_SQL))
+                .add(2, "index reviews by hotel and by user",
+                        SchemaMigrator.addIndex("hotelapp_reviews", "reviews_hotel_date",
+                                "hotelid, status, date, reviewid"),
+                        SchemaMigrator.addIndex("hotelapp_reviews", "reviews_user", "username, status"))
+                .add(3, "create hotel rating aggregates",
+                        SchemaMigrator.sql(MySqlQuery.CREATE_HOTELSTATS_TABLE_SQL),
+                        this::rebuildHotelStats)
+                .add(4, "index likes and logins",
+                        SchemaMigrator.addIndex("hotelapp_likereview", "likereview_review", "reviewid, status"),
+                        SchemaMigrator.addIndex("hotelapp_likehotel", "likehotel_hotel_user", "hotelid, username"),
+                        SchemaMigrator.addIndex("hotelapp_likeexpedia", "likeexpedia_hotel_user",
+                                "hotelid, username"),
+                        SchemaMigrator.addIndex("hotelapp_logins", "logins_user_date", "username, date"))
+                .add(5, "unique likes per user",
+                        SchemaMigrator.addUniqueIndex("hotelapp_likereview", "likereview_unique",
+                                "reviewid, username", "reviewid, username, MAX(date), MAX(status)"),
+                        SchemaMigrator.addUniqueIndex("hotelapp_likehotel", "likehotel_unique",
+                                "hotelid, username", "hotelid, username, MAX(date), MAX(status)"),
+                        SchemaMigrator.addUniqueIndex("hotelapp_likeexpedia", "likeexpedia_unique",
+                                "hotelid, username", "hotelid, username, MAX(link), MAX(date), MAX(status)"),
+                        SchemaMigrator.dropIndex("hotelapp_likehotel", "likehotel_hotel_user"),
+                        SchemaMigrator.dropIndex("hotelapp_likeexpedia", "likeexpedia_hotel_user"))
+                .add(6, "count likes on reviews",
+                        SchemaMigrator.addColumn("hotelapp_reviews", "likes", "INTEGER DEFAULT 0 NOT NULL"),
+                        SchemaMigrator.sql(MySqlQuery.REBUILD_REVIEW_LIKES_SQL))
+                .add(7, "index MyPage lists by user and date",
+                        SchemaMigrator.addIndex("hotelapp_reviews", "reviews_user_date", "username, status, date"),
+                        SchemaMigrator.dropIndex("hotelapp_reviews", "reviews_user"),
+                        SchemaMigrator.addIndex("hotelapp_likehotel", "likehotel_user_date",
+                                "username, status, date"),
+                        SchemaMigrator.addIndex("hotelapp_likereview", "likereview_user_date",
+                                "username, status, date"),
+                        SchemaMigrator.addIndex("hotelapp_likeexpedia", "likeexpedia_user_date",
+                                "username, status, date"));
+    }
+
+    /**
+     * Rebuilds the rating aggregates of all hotels from the available reviews.
+     *
+     * @return int - number of hotels with reviews
+     * @throws SQLException
+     */
+    public int rebuildHotelStats() throws SQLException {
+        try (Connection connection = db.getConnection()) {
+            return rebuildHotelStats(connection);
+        }
+    }
+
+    /**
+     * Rebuilds the rating aggregates of all hotels in one transaction. Requires an active database connection.
+     *
+     * @param connection - active database connection
+     * @return int - number of hotels with reviews
+     * @throws SQLException
+     */
+    private int rebuildHotelStats(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(MySqlQuery.CLEAR_HOTELSTATS_SQL);
+            int hotels = statement.executeUpdate(MySqlQuery.REBUILD_HOTELSTATS_SQL);
+            connection.commit();
+
+            return hotels;
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Adds the change of one review to the rating aggregate of its hotel.
+     * Requires the connection of the transaction that changes the review.
+     *
+     * @param connection - active database connection
+     * @param hotelId
+     * @param ratingDelta - change of the rating sum
+     * @param countDelta - change of the number of reviews
+     * @param recommendDelta - change of the number of recommendations
+     * @throws SQLException
+     */
+    private void updateHotelStats(Connection connection, String hotelId, int ratingDelta, int countDelta,
+                                  int recommendDelta) throws SQLException {
+        executeUpdate(connection, "updateHotelStats", MySqlQuery.UPDATE_HOTELSTATS_SQL,
+                hotelId, ratingDelta, countDelta, recommendDelta);
+        executeUpdate(connection, "updateHotelStats.rating", MySqlQuery.REFRESH_HOTELSTATS_SQL, hotelId);
+    }
+
     /**
      * Tests if a user already exists in the database. Requires an active
      * database connection.
@@ -356,80 +677,161 @@ public class DatabaseHandler {
 
     /**
      * When user login to hotelApp we record their login time and ip address.
+     * The record is buffered and written in a batch later, see LoginRecorder.
      *
      * @param username
      * @param ipAddress
-     * @return int - update result
+     * @return int - 1 if the record has been buffered, 0 if the buffer is full and it has been dropped
      * @throws SQLException
      */
     public int addLogin(String username, String ipAddress) throws SQLException {
-        String query = "INSERT INTO hotelapp_logins (username, ipaddress) VALUES (?, ?);";
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, username);
-        statement.setString(2, ipAddress);
-
-        return statement.executeUpdate();
+        return logins.record(username, ipAddress) ? 1 : 0;
     }
 
     /**
      * Return the user login information to display on MyPage.
+     * Buffered login records are written first, so a user always sees their latest login.
      *
      * @param username
      * @return ResultSet - user login data
      * @throws SQLException
      */
     public ResultSet getLogins(String username) throws SQLException {
+        logins.flush();
+
         String query = "SELECT * FROM hotelapp_logins " +
                 "WHERE username = ? ORDER BY date DESC LIMIT 2;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, username);
+        return executeQuery("getLogins", query, username);
+    }
 
-        return statement.executeQuery();
+    /**
+     * Return the number of hotels matching the city and hotel name filters of hotel table.
+     *
+     * @param ds
+     * @return int - number of hotels
+     * @throws SQLException
+     */
+    public int countHotels(DataSession ds) throws SQLException {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(ds.getElement("city") + "%");
+        String query = "SELECT COUNT(*) AS num FROM hotelapp_hotels AS h " +
+                "WHERE h.city LIKE ?" + hotelNameCondition(ds, parameters) + " AND h.status = 1;";
+
+        try (ResultSet result = executeReadQuery(ds, "countHotels", query, parameters.toArray())) {
+            return result.next() ? result.getInt("num") : 0;
+        }
     }
 
     /**
-     * Get hotel data from database for displaying hotel table.
+     * Get one page of hotel data from database for displaying hotel table.
      *
      * @param ds
+     * @param page - page number starting from 1
+     * @param pageSize - number of rows per page
      * @return ResultSet - hotel data and average rating
      * @throws SQLException
      */
-    public ResultSet getHotels(DataSession ds) throws SQLException {
+    public ResultSet getHotels(DataSession ds, int page, int pageSize) throws SQLException {
         String sortColumn = ds.getElement(ds.getElement("sortColumn"));
         String sortType = ds.getElement("sortType");
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(ds.getElement("city") + "%");
         String query = "SELECT h.hotelid, h.hotelname, h.city, h.latitude, h.longitude, r.rating " +
-                "FROM hotelapp_hotels AS h LEFT JOIN ( " +
-                "SELECT hotelid, ROUND(AVG(rating), 2) AS rating " +
-                "FROM hotelapp_reviews WHERE status = 1 GROUP BY hotelid) AS r " +
+                "FROM hotelapp_hotels AS h LEFT JOIN hotelapp_hotelstats AS r " +
                 "ON r.hotelid = h.hotelid " +
-                "WHERE h.city LIKE ? AND h.hotelname LIKE ? AND h.status = 1 " +
-                "ORDER BY " + sortColumn + " " + sortType + ", h.hotelid ASC;";
+                "WHERE h.city LIKE ?" + hotelNameCondition(ds, parameters) + " AND h.status = 1 " +
+                "ORDER BY " + sortColumn + " " + sortType + ", h.hotelid ASC " +
+                "LIMIT ? OFFSET ?;";
+        parameters.add(pageSize);
+        parameters.add(getOffset(page, pageSize));
+
+        return executeReadQuery(ds, "getHotels", query, parameters.toArray());
+    }
+
+    /**
+     * Return the condition that keeps only hotels whose name contains the hotel name filter, ignoring case.
+     * The filter is resolved to hotel ids by the hotel name index, whose ids are added to the parameters.
+     *
+     * @param ds
+     * @param parameters - query parameters so far
+     * @return String - condition to append to the WHERE clause, empty if there is no filter
+     */
+    private String hotelNameCondition(DataSession ds, List<Object> parameters) {
+        String hotelname = ds.getElement("hotelname");
+
+        if (hotelname == null || hotelname.isEmpty()) {
+            return "";
+        }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, ds.getElement("city") + "%");
-        statement.setString(2, "%" + ds.getElement("hotelname") + "%");
+        List<String> ids = hotelNames.search(hotelname);
+        if (ids.isEmpty()) {
+            return " AND 1 = 0";
+        }
 
-        return statement.executeQuery();
+        parameters.addAll(ids);
+        return " AND h.hotelid IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
     }
 
     /**
-     * Return all cities of hotels in database.
+     * Build the hotel name index from the hotel table.
      *
-     * @return ResultSet - city names
      * @throws SQLException
      */
-    public ResultSet getCitys() throws SQLException {
-        String query = "SELECT city FROM hotelapp_hotels GROUP BY city ORDER BY city ASC;";
+    private void indexHotelNames() throws SQLException {
+        try (ResultSet result = executeQuery("indexHotelNames", "SELECT hotelid, hotelname FROM hotelapp_hotels;")) {
+            while (result.next()) {
+                hotelNames.add(result.getString("hotelid"), result.getString("hotelname"));
+            }
+        }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
+        System.out.println("Indexed " + hotelNames.size() + " hotel names.");
+    }
 
-        return statement.executeQuery();
+    /**
+     * Return the number of rows to skip before the given page.
+     *
+     * @param page - page number starting from 1
+     * @param pageSize - number of rows per page
+     * @return int - offset
+     */
+    public static int getOffset(int page, int pageSize) {
+        return Math.max(0, page - 1) * pageSize;
+    }
+
+    /**
+     * Return all cities of hotels in database, from the reference data cache.
+     *
+     * @return List - sorted city names
+     */
+    public List<String> getCitys() {
+        return reference.getCities();
+    }
+
+    /**
+     * Return name, city, address and coordinates of a hotel.
+     * Served from the reference data cache, hotels that are not cached yet are read from the database.
+     *
+     * @param id
+     * @return ReferenceDataCache.HotelInfo - hotel data, or null if there is no such hotel
+     * @throws SQLException
+     */
+    public ReferenceDataCache.HotelInfo getHotelInfo(String id) throws SQLException {
+        ReferenceDataCache.HotelInfo hotel = reference.getHotel(id);
+
+        if (hotel == null) {
+            String query = "SELECT hotelid, hotelname, city, address, latitude, longitude " +
+                    "FROM hotelapp_hotels WHERE hotelid = ?;";
+
+            try (ResultSet result = executeReadQuery("getHotelInfo", query, id)) {
+                if (result.next()) {
+                    hotel = new ReferenceDataCache.HotelInfo(result);
+                    reference.invalidate();
+                }
+            }
+        }
+
+        return hotel;
     }
 
     /**
@@ -450,31 +852,26 @@ public class DatabaseHandler {
                     "WHERE " + type + "id = ?;";
         }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, ds.getElement(type + "id"));
-
-        return statement.executeQuery();
+        return executeReadQuery(ds, "getDetails", query, ds.getElement(type + "id"));
     }
 
     /**
-     * Return the average rating of particular hotel.
+     * Return the average rating of particular hotel from its rating aggregate.
      *
      * @param id
-     * @return double - rating
+     * @return double - rating, or 0 if the hotel has no reviews
      * @throws SQLException
      */
     public double getRating(String id) throws SQLException {
-        String query = "SELECT ROUND(AVG(rating), 2) AS rating FROM hotelapp_reviews WHERE hotelid = ? AND status = 1;";
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
+        String query = "SELECT rating FROM hotelapp_hotelstats WHERE hotelid = ?;";
 
-        ResultSet result = statement.executeQuery();
-        result.next();
+        try (ResultSet result = executeReadQuery("getRating", query, id)) {
+            if (result.next()) {
+                return result.getDouble("rating");
+            }
+        }
 
-        return result.getDouble("rating");
+        return 0;
     }
 
     /**
@@ -492,11 +889,7 @@ public class DatabaseHandler {
                 "ON e.hotelid = h.hotelid " +
                 "WHERE h.hotelid = ?;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
-
-        return statement.executeQuery();
+        return executeReadQuery("getHotel", query, id);
     }
 
     /**
@@ -510,14 +903,14 @@ public class DatabaseHandler {
      */
     public ResultSet getExpedia(String id) throws SQLException {
         String query = "SELECT * FROM hotelapp_expedia WHERE hotelid = ?;";
+        boolean found;
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
-        ResultSet result = statement.executeQuery();
+        try (ResultSet result = executeQuery("getExpedia.exists", query, id)) {
+            found = result.next();
+        }
 
-        if (!result.next()) {
-            if (setExpedia(id) == 0) {
+        if (!found) {
+            if (setExpedia(id).isEmpty()) {
                 return null;
             }
             else {
@@ -525,73 +918,228 @@ public class DatabaseHandler {
             }
         }
 
-        return statement.executeQuery();
+        return executeQuery("getExpedia", query, id);
+    }
+
+    /**
+     * Return everything the hotel detail card shows in one query: the hotel, its Expedia data, its rating,
+     * and the saved hotel and checked Expedia link states of the user.
+     * A hotel without Expedia data is scraped from Expedia first, as getExpedia does.
+     *
+     * @param id
+     * @param username
+     * @return HotelDetail - hotel detail, or null if there is no such hotel
+     * @throws SQLException
+     */
+    public HotelDetail getHotelDetail(String id, String username) throws SQLException {
+        String query = "SELECT h.hotelid, h.hotelname, h.city, h.address, h.latitude, h.longitude, " +
+                "e.hotelid AS expediaid, e.phone, e.photo, s.rating, " +
+                "lh.status AS saved, le.status AS expediachecked " +
+                "FROM hotelapp_hotels AS h " +
+                "LEFT JOIN hotelapp_expedia AS e ON e.hotelid = h.hotelid " +
+                "LEFT JOIN hotelapp_hotelstats AS s ON s.hotelid = h.hotelid " +
+                "LEFT JOIN hotelapp_likehotel AS lh ON lh.hotelid = h.hotelid AND lh.username = ? " +
+                "LEFT JOIN hotelapp_likeexpedia AS le ON le.hotelid = h.hotelid AND le.username = ? " +
+                "WHERE h.hotelid = ?;";
+        HotelDetail detail = null;
+
+        try (ResultSet result = executeQuery("getHotelDetail", query, username, username, id)) {
+            if (result.next()) {
+                detail = new HotelDetail(result);
+            }
+        }
+
+        if (detail != null && !detail.hasExpedia()) {
+            Map<String, String> info = setExpedia(id);
+            if (!info.isEmpty()) {
+                detail.setExpedia(info.get("phone"), info.get("photo"));
+            }
+        }
+
+        return detail;
+    }
+
+    /**
+     * Return the hotel detail card of a hotel that has been read from memory, with the data that is not kept
+     * in memory read in one query: its Expedia data and the saved hotel and checked Expedia link states of the
+     * user. A hotel without Expedia data is scraped from Expedia first, as getExpedia does.
+     *
+     * @param hotel - hotel with its average rating
+     * @param username
+     * @return HotelDetail - hotel detail, or null if the hotel is not in the database
+     * @throws SQLException
+     */
+    public HotelDetail getHotelDetail(Hotel hotel, String username) throws SQLException {
+        String query = "SELECT e.hotelid AS expediaid, e.phone, e.photo, " +
+                "lh.status AS saved, le.status AS expediachecked " +
+                "FROM hotelapp_hotels AS h " +
+                "LEFT JOIN hotelapp_expedia AS e ON e.hotelid = h.hotelid " +
+                "LEFT JOIN hotelapp_likehotel AS lh ON lh.hotelid = h.hotelid AND lh.username = ? " +
+                "LEFT JOIN hotelapp_likeexpedia AS le ON le.hotelid = h.hotelid AND le.username = ? " +
+                "WHERE h.hotelid = ?;";
+        HotelDetail detail = null;
+
+        try (ResultSet result = executeQuery("getHotelDetail.user", query, username, username,
+                hotel.getHotelId())) {
+            if (result.next()) {
+                detail = new HotelDetail(hotel, result);
+            }
+        }
+
+        if (detail != null && !detail.hasExpedia()) {
+            Map<String, String> info = setExpedia(hotel.getHotelId());
+            if (!info.isEmpty()) {
+                detail.setExpedia(info.get("phone"), info.get("photo"));
+            }
+        }
+
+        return detail;
     }
 
     /**
      * Call Expedia class to do scraping and insert data we get from Expedia into database.
      *
      * @param id
-     * @return int - update result
+     * @return Map - Expedia data that has been inserted, empty if there is none
      * @throws SQLException
      */
-    private int setExpedia(String id) throws SQLException {
-        String query = "INSERT INTO hotelapp_expedia (hotelid, phone, photo) VALUES (?, ?, ?);";
+    private Map<String, String> setExpedia(String id) throws SQLException {
+        String query = "INSERT IGNORE INTO hotelapp_expedia (hotelid, phone, photo) VALUES (?, ?, ?);";
 
         Expedia expedia = new Expedia();
         Map<String, String> info = expedia.getInfo(id);
 
-        if (info.size() == 0) {
-            return 0;
+        if (info.size() > 0) {
+            executeUpdate("setExpedia", query, id, info.get("phone"), info.get("photo"));
         }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
-        statement.setString(2, info.get("phone"));
-        statement.setString(3, info.get("photo"));
+        return info;
+    }
+
+    /**
+     * Return the number of available reviews of the hotel in review table.
+     *
+     * @param ds
+     * @return int - number of reviews
+     * @throws SQLException
+     */
+    public int countReviews(DataSession ds) throws SQLException {
+        String query = "SELECT COUNT(*) AS num FROM hotelapp_reviews WHERE hotelid = ? AND status = 1;";
 
-        return statement.executeUpdate();
+        try (ResultSet result = executeReadQuery(ds, "countReviews", query, ds.getElement("hotelid"))) {
+            return result.next() ? result.getInt("num") : 0;
+        }
     }
 
     /**
-     * Get review data from database for displaying review table.
+     * Get one page of review data from database for displaying review table.
+     * When the table is sorted by date, ties are broken by reviewid in the same direction, so both directions are
+     * one scan of the reviews_hotel_date index. The page is read by seeking from the last (date, reviewid) of the
+     * closest earlier page already displayed, so deep pages cost as much as the first one. Without such a page, the
+     * offset is skipped in the index alone and only the rows of the page are read.
+     * Other sortings fall back to LIMIT/OFFSET.
      *
      * @param ds
+     * @param page - page number starting from 1
+     * @param pageSize - number of rows per page
      * @return ResultSet - review data
      * @throws SQLException
      */
-    public ResultSet getReviews(DataSession ds) throws SQLException {
+    public ResultSet getReviews(DataSession ds, int page, int pageSize) throws SQLException {
         String sortColumn = ds.getElement(ds.getElement("sortColumn"));
         String sortType = ds.getElement("sortType");
+
+        if (sortColumn.equals("r.date")) {
+            String direction = sortType.equals("ASC") ? "ASC" : "DESC";
+            String order = "ORDER BY r.date " + direction + ", r.reviewid " + direction + " ";
+            String indexOrder = "ORDER BY date " + direction + ", reviewid " + direction + " ";
+            Map.Entry<Integer, Object[]> cursor = getReviewCursors(ds, pageSize).lowerEntry(page);
+
+            if (cursor != null) {
+                String after = direction.equals("ASC") ? ">" : "<";
+                String query = "SELECT r.reviewid, r.username, r.title, r.rating, r.date " +
+                        "FROM hotelapp_reviews AS r WHERE r.hotelid = ? AND r.status = 1 " +
+                        "AND (r.date " + after + " ? OR (r.date = ? AND r.reviewid " + after + " ?)) " +
+                        order + "LIMIT ? OFFSET ?;";
+                Object[] last = cursor.getValue();
+                int skip = (page - 1 - cursor.getKey()) * pageSize;
+
+                return executeReadQuery(ds, "getReviews", query, ds.getElement("hotelid"),
+                        last[0], last[0], last[1], pageSize, skip);
+            }
+
+            // the derived table only reads the index, the join reads the rows of the page
+            String query = "SELECT r.reviewid, r.username, r.title, r.rating, r.date " +
+                    "FROM hotelapp_reviews AS r JOIN (SELECT reviewid FROM hotelapp_reviews " +
+                    "WHERE hotelid = ? AND status = 1 " + indexOrder + "LIMIT ? OFFSET ?) AS p " +
+                    "ON p.reviewid = r.reviewid " + order.trim() + ";";
+
+            return executeReadQuery(ds, "getReviews", query, ds.getElement("hotelid"), pageSize,
+                    getOffset(page, pageSize));
+        }
+
         String query = "SELECT r.reviewid, r.username, r.title, r.rating, r.date " +
                 "FROM hotelapp_reviews AS r WHERE r.hotelid = ? AND r.status = 1 " +
-                "ORDER BY " + sortColumn + " " + sortType + ", r.reviewid ASC;";
+                "ORDER BY " + sortColumn + " " + sortType + ", r.reviewid ASC " +
+                "LIMIT ? OFFSET ?;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, ds.getElement("hotelid"));
+        return executeReadQuery(ds, "getReviews", query, ds.getElement("hotelid"), pageSize, getOffset(page, pageSize));
+    }
 
-        return statement.executeQuery();
+    /**
+     * Remember the last review displayed on a page of review table, to seek from it when reading later pages.
+     *
+     * @param ds
+     * @param page
+     * @param pageSize
+     * @param date - date of the last review on the page
+     * @param reviewId - id of the last review on the page
+     */
+    public void setReviewCursor(DataSession ds, int page, int pageSize, Timestamp date, int reviewId) {
+        getReviewCursors(ds, pageSize).put(page, new Object[] {date, reviewId});
+    }
+
+    /**
+     * Return the page cursors of review table stored in the data session.
+     * Cursors are dropped when the hotel, the sorting or the page size changes, or when the reviews of the hotel
+     * have been written since, as the pages may have moved.
+     * The map is concurrent, as requests of the same session may read and add cursors at the same time.
+     *
+     * @param ds
+     * @param pageSize
+     * @return ConcurrentSkipListMap - last (date, reviewid) of each displayed page by page number
+     */
+    @SuppressWarnings("unchecked")
+    private ConcurrentSkipListMap<Integer, Object[]> getReviewCursors(DataSession ds, int pageSize) {
+        String hotelId = ds.getElement("hotelid");
+        String cursorOf = hotelId + "|" + reviewVersions.getOrDefault(hotelId, 0L) + "|"
+                + ds.getElement("sortColumn") + "|" + ds.getElement("sortType") + "|" + pageSize;
+        ConcurrentSkipListMap<Integer, Object[]> cursors =
+                (ConcurrentSkipListMap<Integer, Object[]>) ds.getObject("reviewCursors");
+
+        if (cursors == null || !cursorOf.equals(ds.getObject("reviewCursorOf"))) {
+            cursors = new ConcurrentSkipListMap<>();
+            ds.setObject("reviewCursors", cursors);
+            ds.setObject("reviewCursorOf", cursorOf);
+        }
+
+        return cursors;
     }
 
     /**
-     * Return number of likes of particular review.
+     * Return number of likes of particular review, kept up to date on the review by every like change.
      *
      * @param id
      * @return int - number of likes
      * @throws SQLException
      */
     public int getLikes(String id) throws SQLException {
-        String query = "SELECT COUNT(*) AS likes FROM hotelapp_likereview WHERE reviewid = ? AND status = 1;";
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
+        String query = "SELECT likes FROM hotelapp_reviews WHERE reviewid = ?;";
 
-        ResultSet result = statement.executeQuery();
-        if (result.next()) {
-            return result.getInt("likes");
+        try (ResultSet result = executeReadQuery("getLikes", query, id)) {
+            if (result.next()) {
+                return result.getInt("likes");
+            }
         }
 
         return 0;
@@ -599,12 +1147,14 @@ public class DatabaseHandler {
 
     /**
      * Record liking reviews, saving hotels, checking Expedia links by user.
-     * Maintaining status in 0 or 1 for data available.
+     * Maintaining status in 0 or 1 for data available. One upsert inserts the like or toggles its status,
+     * and the new status is read from the LAST_INSERT_ID(expr) the update sets.
+     * Liking a review also changes the like count of the review in the same transaction.
      *
      * @param type
      * @param id
      * @param username
-     * @return int - update result
+     * @return int - new status, 1 if liked and 0 if not
      * @throws SQLException
      */
     public int setLike(String type, String id, String username) throws SQLException {
@@ -613,62 +1163,38 @@ public class DatabaseHandler {
         if (type.equals("expedia")) {
             query = "INSERT INTO hotelapp_like" + type + " (hotelid, username, link) VALUES (?, ?, ?)";
         }
+        query += " ON DUPLICATE KEY UPDATE status = LAST_INSERT_ID(1 - status), date = CURRENT_TIMESTAMP;";
 
-        if (checkLike(type, id, username) != 0) {
-            query = "UPDATE hotelapp_like" + type
-                    + " SET status = ABS(status - 1), date = CURRENT_TIMESTAMP"
-                    + " WHERE " + type + "id = ? AND username = ?;";
-
+        try (Connection connection = db.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, id);
+            statement.setString(2, username);
             if (type.equals("expedia")) {
-                query = "UPDATE hotelapp_like" + type
-                        + " SET status = ABS(status - 1), date = CURRENT_TIMESTAMP"
-                        + " WHERE hotelid = ? AND username = ?;";
+                statement.setString(3, new Expedia().getExpediaLink(id));
             }
-        }
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
-        statement.setString(2, username);
 
-        if (type.equals("expedia") && query.startsWith("INSERT")) {
-            Expedia expedia = new Expedia();
-            statement.setString(3, expedia.getExpediaLink(id));
-        }
-
-        return statement.executeUpdate();
-    }
-
-    /**
-     * Support setLike function, check if a user has already liked a review/hotel/expedia.
-     * If yes, we do update in setLike function.
-     *
-     * @param type
-     * @param id
-     * @param username
-     * @return int - data count
-     * @throws SQLException
-     */
-    private int checkLike(String type, String id, String username) throws SQLException {
-        String query = "SELECT COUNT(*) AS likes FROM hotelapp_like" + type
-                + " WHERE " + type + "id = ? AND username = ?;";
-
-        if (type.equals("expedia")) {
-            query = "SELECT COUNT(*) AS likes FROM hotelapp_like" + type
-                    + " WHERE hotelid = ? AND username = ?;";
-        }
+            connection.setAutoCommit(!type.equals("review"));
+            db.markWrite(username);
+
+            // 1 row affected for a new like, 2 for a toggled one
+            int status = 1;
+            long start = System.nanoTime();
+            int rows = statement.executeUpdate();
+            stats.record("setLike", query, System.nanoTime() - start);
+            stats.addRows("setLike", rows);
+            if (rows != 1) {
+                ResultSet keys = statement.getGeneratedKeys();
+                status = (keys.next()) ? keys.getInt(1) : 0;
+            }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, id);
-        statement.setString(2, username);
+            if (type.equals("review")) {
+                executeUpdate(connection, "setLike.likes",
+                        "UPDATE hotelapp_reviews SET likes = likes + ? WHERE reviewid = ?;", (status == 1) ? 1 : -1, id);
+                connection.commit();
+            }
 
-        ResultSet result = statement.executeQuery();
-        if (result.next()) {
-            return result.getInt("likes");
+            return status;
         }
-
-        return 0;
     }
 
     /**
@@ -683,55 +1209,79 @@ public class DatabaseHandler {
                 "FROM hotelapp_reviews AS r INNER JOIN hotelapp_hotels AS h " +
                 "ON h.hotelid = r.hotelid WHERE r.reviewid = ? AND r.status = 1;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, reviewId);
-
-        return statement.executeQuery();
+        return executeQuery("getReview", query, reviewId);
     }
 
     /**
      * Adding a new review to a particular hotel, or editing a particular review in database.
+     * The rating aggregate of the hotel is updated in the same transaction.
      *
      * @param inputs
      * @return int - update result
      * @throws SQLException
      */
     public int putReview(DataSession inputs) throws SQLException {
-        String query;
+        String type = inputs.getElement("type");
 
-        if (inputs.getElement("type").equals("add")) {
-            query = "INSERT INTO hotelapp_reviews (" +
-                "title, rating, recommend, review, hotelid, username" +
-                ") VALUES (?, ?, ?, ?, ?, ?);";
-        }
-        else if (inputs.getElement("type").equals("edit")) {
-            query = "UPDATE hotelapp_reviews SET date = CURRENT_TIMESTAMP " +
-                    ", title = ?, rating = ?, recommend = ?, review = ? " +
-                    "WHERE reviewid = ? AND username = ?;";
-        }
-        else if (inputs.getElement("type").equals("delete")) {
+        if (type.equals("delete")) {
             return deleteReview(inputs);
         }
-        else {
+        else if (!type.equals("add") && !type.equals("edit")) {
             return 0;
         }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, inputs.getElement("title"));
-        statement.setInt(2, Integer.parseInt(inputs.getElement("rating")));
-        statement.setInt(3, Integer.parseInt(inputs.getElement("recommend")));
-        statement.setString(4, inputs.getElement("review"));
-        statement.setString(5, inputs.getElement("id"));
-        statement.setString(6, inputs.getElement("username"));
+        String id = inputs.getElement("id");
+        String username = inputs.getElement("username");
+        int rating = Integer.parseInt(inputs.getElement("rating"));
+        int recommend = Integer.parseInt(inputs.getElement("recommend"));
+        String hotelId;
+        int result;
+        db.markWrite(username);
+
+        try (Connection connection = db.getConnection()) {
+            connection.setAutoCommit(false);
+
+            if (type.equals("add")) {
+                String query = "INSERT INTO hotelapp_reviews (" +
+                        "title, rating, recommend, review, hotelid, username" +
+                        ") VALUES (?, ?, ?, ?, ?, ?);";
+
+                result = executeUpdate(connection, "putReview.add", query, inputs.getElement("title"), rating,
+                        recommend, inputs.getElement("review"), id, username);
+                if (result > 0) {
+                    updateHotelStats(connection, id, rating, 1, recommend);
+                }
+                hotelId = id;
+            }
+            else {
+                String query = "UPDATE hotelapp_reviews SET date = CURRENT_TIMESTAMP " +
+                        ", title = ?, rating = ?, recommend = ?, review = ? " +
+                        "WHERE reviewid = ? AND username = ?;";
+                String[] old = lockReview(connection, id, username);
+
+                result = executeUpdate(connection, "putReview.edit", query, inputs.getElement("title"), rating,
+                        recommend, inputs.getElement("review"), id, username);
+                if (result > 0 && old != null) {
+                    updateHotelStats(connection, old[0], rating - Integer.parseInt(old[1]), 0,
+                            recommend - Integer.parseInt(old[2]));
+                }
+                hotelId = (old == null) ? null : old[0];
+            }
+
+            connection.commit();
+        }
+
+        if (result > 0 && hotelId != null) {
+            reviewsChanged(hotelId);
+        }
 
-        return statement.executeUpdate();
+        return result;
     }
 
     /**
      * Deleting a review by setting status into 0 to disable data.
-     * If a review has been deleted, we clear all likes data fo this review.
+     * If a review has been deleted, we clear all likes data fo this review and remove it from the rating
+     * aggregate of its hotel, all in one transaction.
      * Concept: We do not allow a user to remove any data from database, only a DBA can do that.
      *
      * @param inputs
@@ -741,15 +1291,60 @@ public class DatabaseHandler {
     private int deleteReview(DataSession inputs) throws SQLException {
         String query = "UPDATE hotelapp_reviews SET status = 0, date = CURRENT_TIMESTAMP " +
                 "WHERE reviewid = ? AND username = ?;";
+        String id = inputs.getElement("id");
+        String[] old;
+        int result;
+        db.markWrite(inputs.getElement("username"));
+
+        try (Connection connection = db.getConnection()) {
+            connection.setAutoCommit(false);
+            old = lockReview(connection, id, inputs.getElement("username"));
+
+            if (old != null) {
+                clearLikes(connection, id);
+            }
+
+            result = executeUpdate(connection, "deleteReview", query, id, inputs.getElement("username"));
+            if (result > 0 && old != null) {
+                updateHotelStats(connection, old[0], -Integer.parseInt(old[1]), -1, -Integer.parseInt(old[2]));
+            }
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, inputs.getElement("id"));
-        statement.setString(2, inputs.getElement("username"));
+            connection.commit();
+        }
 
-        clearLikes(inputs.getElement("id"));
+        if (result > 0 && old != null) {
+            reviewsChanged(old[0]);
+        }
 
-        return statement.executeUpdate();
+        return result;
+    }
+
+    /**
+     * Lock an available review of a user for the current transaction and return what the rating aggregate
+     * needs to know about it.
+     *
+     * @param connection - connection of the transaction
+     * @param reviewId
+     * @param username
+     * @return String[] - hotel id, rating and recommend of the review, or null if there is no such review
+     * @throws SQLException
+     */
+    private String[] lockReview(Connection connection, String reviewId, String username) throws SQLException {
+        String query = "SELECT hotelid, rating, recommend FROM hotelapp_reviews " +
+                "WHERE reviewid = ? AND username = ? AND status = 1 FOR UPDATE;";
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, reviewId);
+            statement.setString(2, username);
+
+            ResultSet result = statement.executeQuery();
+            if (result.next()) {
+                return new String[] {result.getString("hotelid"), result.getString("rating"),
+                        result.getString("recommend")};
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -763,36 +1358,22 @@ public class DatabaseHandler {
         String query = "SELECT * FROM hotelapp_likereview " +
                 "WHERE reviewid = ? AND status = 1 ORDER BY date DESC;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, reviewId);
-
-        return statement.executeQuery();
+        return executeReadQuery("showReviewLikes", query, reviewId);
     }
 
     /**
      * Return an API key for particular type of usage. (ex: google place api)
      * It is important to store API key in database for an open source app.
+     * Served from the reference data cache.
      *
      * @param hostname
      * @param type
      * @return String - API key
-     * @throws SQLException
      */
-    public String getApiKey(String hostname, String type) throws SQLException {
-        String query = "SELECT token FROM hotelapp_apikeys WHERE hostname = ? AND type = ?;";
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, hostname);
-        statement.setString(2, type);
+    public String getApiKey(String hostname, String type) {
+        String token = reference.getApiKey(hostname, type);
 
-        ResultSet result = statement.executeQuery();
-        if (result.next()) {
-            return result.getString("token");
-        }
-
-        return "";
+        return (token == null) ? "" : token;
     }
 
     /**
@@ -807,43 +1388,56 @@ public class DatabaseHandler {
     public int getSaved(String type, String hotelId, String username) throws SQLException {
         String query = "SELECT * FROM hotelapp_like" + type + " WHERE hotelid = ? AND username = ?;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, hotelId);
-        statement.setString(2, username);
-
-        ResultSet result = statement.executeQuery();
-        if (result.next()) {
-            return result.getInt("status");
+        try (ResultSet result = executeQuery("getSaved", query, hotelId, username)) {
+            if (result.next()) {
+                return result.getInt("status");
+            }
         }
 
         return 0;
     }
 
     /**
-     * Return reviewed data, saved hotels, liked reviews, checked Expedia links of user for MyPage.
+     * Return a window of reviewed data, saved hotels, liked reviews or checked Expedia links of user for MyPage,
+     * newest first. One row more than the limit is read to tell whether the list goes on.
      *
      * @param type
      * @param username
-     * @return ResultSet - data of user
+     * @param offset - number of rows to skip
+     * @param limit - maximum number of rows to return
+     * @return MyDataPage - rows of the window and whether there are more
      * @throws SQLException
      */
-    public ResultSet getMyData(List<String> type, String username) throws SQLException {
-        String query = "SELECT * FROM hotelapp_" + type.get(0) + " AS main " +
+    public MyDataPage getMyData(List<String> type, String username, int offset, int limit) throws SQLException {
+        String id = type.get(0).contains("review") ? "reviewid" : "hotelid";
+        String link = type.get(0).equals("likeexpedia") ? "main.link" : "NULL";
+        String query = "SELECT main." + id + " AS id, " + type.get(3) + " AS label, " + link + " AS link " +
+                "FROM hotelapp_" + type.get(0) + " AS main " +
                 "LEFT JOIN hotelapp_" + type.get(1) + " AS sub " +
                 "ON sub." + type.get(2) + " = main." + type.get(2) +
-                " WHERE main.username = ? AND main.status = 1 ORDER BY main.date DESC;";
-
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, username);
+                " WHERE main.username = ? AND main.status = 1 ORDER BY main.date DESC, main." + id + " DESC " +
+                "LIMIT ? OFFSET ?;";
+        List<MyDataPage.Item> items = new ArrayList<>();
+        boolean hasMore = false;
+
+        try (ResultSet result = executeQuery("getMyData", query, username, limit + 1, Math.max(0, offset))) {
+            while (result.next()) {
+                if (items.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                items.add(new MyDataPage.Item(result.getString("id"), result.getString("label"),
+                        result.getString("link")));
+            }
+        }
 
-        return statement.executeQuery();
+        return new MyDataPage(items, hasMore);
     }
 
     /**
      * Clear particular field of user data.
      * If clearing MyReviews, we clear all likes data of these reviews.
+     * If clearing liked reviews, the like counts of these reviews go down in the same transaction.
      *
      * @param type
      * @param username
@@ -851,46 +1445,103 @@ public class DatabaseHandler {
      * @throws SQLException
      */
     public int clearMyData(List<String> type, String username) throws SQLException {
-        if (type.get(0).equals("reviews")) {
-            clearLikesByMe(username);
-        }
-
         String query = "UPDATE hotelapp_" + type.get(0) +
                 " SET status = 0 WHERE username = ? AND status = 1;";
+        db.markWrite(username);
+
+        if (type.get(0).equals("likereview")) {
+            // unliking reviews also takes the likes off their counts
+            try (Connection connection = db.getConnection()) {
+                connection.setAutoCommit(false);
+                executeUpdate(connection, "clearMyData.likes", "UPDATE hotelapp_reviews AS r " +
+                        "INNER JOIN hotelapp_likereview AS l ON l.reviewid = r.reviewid " +
+                        "SET r.likes = r.likes - 1 WHERE l.username = ? AND l.status = 1;", username);
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, username);
+                int result = executeUpdate(connection, "clearMyData", query, username);
+                connection.commit();
 
-        return statement.executeUpdate();
+                return result;
+            }
+        }
+        else if (!type.get(0).equals("reviews")) {
+            return executeUpdate("clearMyData", query, username);
+        }
+
+        // clearing reviews also clears their likes and removes them from the rating aggregates
+        List<String> hotelIds = new ArrayList<>();
+        int result;
+
+        try (Connection connection = db.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT DISTINCT hotelid FROM hotelapp_reviews WHERE username = ? AND status = 1;")) {
+                statement.setString(1, username);
+
+                ResultSet hotels = statement.executeQuery();
+                while (hotels.next()) {
+                    hotelIds.add(hotels.getString("hotelid"));
+                }
+            }
+            clearLikesByMe(connection, username);
+            executeUpdate(connection, "clearMyData.stats", MySqlQuery.REMOVE_USER_HOTELSTATS_SQL, username);
+            executeUpdate(connection, "clearMyData.rating", MySqlQuery.REFRESH_USER_HOTELSTATS_SQL, username);
+
+            result = executeUpdate(connection, "clearMyData", query, username);
+            connection.commit();
+        }
+
+        for (String hotelId : hotelIds) {
+            reviewsChanged(hotelId);
+        }
+
+        return result;
+    }
+
+    /**
+     * Tell the repository that the reviews of a hotel have been written, and drop the review page cursors of
+     * the hotel in every session.
+     * The write has been committed already, so a failure is only reported.
+     *
+     * @param hotelId
+     */
+    private void reviewsChanged(String hotelId) {
+        reviewVersions.merge(hotelId, 1L, Long::sum);
+
+        try {
+            repository.reviewsChanged(hotelId);
+        }
+        catch (SQLException e) {
+            System.out.println(e);
+        }
     }
 
     /**
      * Clear all likes of particular review.
      *
+     * @param connection - connection of the transaction
      * @param reviewId
      * @return int - update result
      * @throws SQLException
      */
-    private int clearLikes(String reviewId) throws SQLException {
+    private int clearLikes(Connection connection, String reviewId) throws SQLException {
         String query = "UPDATE hotelapp_likereview " +
                 "SET status = 0 WHERE reviewid = ? AND status = 1;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setString(1, reviewId);
+        executeUpdate(connection, "clearLikes.likes", "UPDATE hotelapp_reviews SET likes = 0 WHERE reviewid = ?;",
+                reviewId);
 
-        return statement.executeUpdate();
+        return executeUpdate(connection, "clearLikes", query, reviewId);
     }
 
     /**
      * Clear all likes of a user's reviews.
      *
+     * @param connection - connection of the transaction
      * @param username
      * @return int - update result
      * @throws SQLException
      */
-    private int clearLikesByMe(String username) throws SQLException {
+    private int clearLikesByMe(Connection connection, String username) throws SQLException {
         String clearLikes = "UPDATE hotelapp_likereview " +
                 "SET status = 0 " +
                 "WHERE reviewid IN (" +
@@ -898,11 +1549,10 @@ public class DatabaseHandler {
                 "WHERE username = ? AND status = 1" +
                 ") AND status = 1;";
 
-        Connection connection = db.getConnection();
-        PreparedStatement statement = connection.prepareStatement(clearLikes);
-        statement.setString(1, username);
+        executeUpdate(connection, "clearLikesByMe.likes",
+                "UPDATE hotelapp_reviews SET likes = 0 WHERE username = ? AND status = 1;", username);
 
-        return statement.executeUpdate();
+        return executeUpdate(connection, "clearLikesByMe", clearLikes, username);
     }
 
     /**
@@ -958,66 +1608,172 @@ public class DatabaseHandler {
 
     /**
      * To load json files into database, only do when the first time server starts.
+     * Reviews are written by load.writers threads while the json files are still being parsed, see ReviewLoader.
+     * With load.local, each parser thread keeps its reviews to itself and the writers get them after the merge.
+     * Hotels and reviewers are written afterwards in one transaction, so the hotel table stays empty until the
+     * load has completed, and a failed load removes the written reviews and is retried on the next start.
      *
      * @param connection
      * @throws SQLException
      */
     private void loadData(Connection connection) throws SQLException {
-        // load all hotel info and reviews into data structure
-        hdata = new ThreadSafeHotelData();
-        builder = new HotelDataBuilder(hdata, THREAD);
+        int batchSize = Math.max(1, db.getInt("load.batchSize", 500));
+        int writers = db.getInt("load.writers", THREAD);
+
+        // each writer holds a pooled connection for the whole load, next to the connection of this method
+        int maxWriters = Math.max(1, db.getInt("pool.maxSize", 10) - 1);
+        if (writers > maxWriters) {
+            System.out.println("load.writers=" + writers + " needs more connections than pool.maxSize, using "
+                    + maxWriters + " writers.");
+            writers = maxWriters;
+        }
+        ReviewLoader loader = new ReviewLoader(db, writers, batchSize, db.getInt("load.queueSize", 10000));
+
+        // parse hotel info, then stream reviews from the parser threads to the writer threads,
+        // or with load.local parse reviews without locking and queue them once they have been merged
+        boolean local = Boolean.parseBoolean(db.getString("load.local", "false"));
+        ReviewQueueHotelData queued = null;
+        if (local) {
+            hdata = new ThreadSafeHotelData();
+        }
+        else {
+            queued = new ReviewQueueHotelData(loader.getQueue());
+            hdata = queued;
+        }
+        builder = new HotelDataBuilder(hdata, THREAD, local);
         String inputHotelFile = "input" + File.separator + "hotels.json";
         builder.loadHotelInfo(inputHotelFile);
-        builder.loadReviews(Paths.get("input" + File.separator + "reviews"));
-        System.out.println("Completed loading from json file to data structure.");
-
-        // load data into database
-        Set<String> usernames = new TreeSet<>();
-        for (String id : hdata.getHotels()) {
-            Hotel hotel = hdata.getHotel(id);
 
-            try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.INSERT_HOTEL_SQL)) {
-                // hotelid, hotelname, city, address, latitude, longitude
-                statement.setString(1, id);
-                statement.setString(2, hotel.getHotelName());
-                statement.setString(3, hotel.getAddress().getCity());
-                statement.setString(4, hotel.getAddress().toString());
-                statement.setDouble(5, hotel.getAddress().getLatitude());
-                statement.setDouble(6, hotel.getAddress().getLongitude());
-                statement.executeUpdate();
-            }
-
-            Set<Review> reviews;
-            if ((reviews = hdata.getHotelReviews(id)) != null) {
-                for (Review review : reviews) {
-                    String username;
-                    if ((username = review.getUsername()) != null && !username.equals("")) {
-                        try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.INSERT_REVIEW_SQL)) {
-                            // hotelid, username, rating, recommend, title, review, date
-                            statement.setString(1, id);
-                            statement.setString(2, username);
-                            statement.setInt(3, review.getRating());
-                            statement.setInt(4, (review.getIsRecom()) ? 1 : 0);
-                            statement.setString(5, review.getReviewTitle());
-                            statement.setString(6, review.getReview());
-                            statement.setTimestamp(7, new Timestamp(review.getDate().getTime()));
-                            statement.executeUpdate();
-                        }
-
-                        usernames.add(username);
+        Set<String> usernames;
+        try {
+            loader.start();
+            builder.loadReviews(Paths.get("input" + File.separator + "reviews"));
+            builder.awaitReviews();
+            if (queued != null) {
+                queued.close();
+            }
+            else {
+                for (String id : hdata.getHotels()) {
+                    for (Review review : hdata.getHotelReviews(id)) {
+                        loader.add(review);
                     }
                 }
             }
+            usernames = new TreeSet<>(loader.finish());
+            System.out.println("Completed loading reviews from json file to database.");
+        }
+        catch (SQLException | RuntimeException e) {
+            // parser threads still waiting on a full queue give up
+            if (queued != null) {
+                queued.close();
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM hotelapp_reviews;");
+            }
+            throw e;
         }
 
-        // load usernames into database
-        for (String username : usernames) {
-            byte[] saltBytes = new byte[16];
-            random.nextBytes(saltBytes);
-            String randomPassword = encodeHex(saltBytes, 32);
-            registerUser(username, "@" + randomPassword);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement hotels = connection.prepareStatement(MySqlQuery.INSERT_HOTEL_SQL);
+             PreparedStatement users = connection.prepareStatement(MySqlQuery.REGISTER_IGNORE_SQL)) {
+            int hotelRows = 0;
+            int userRows = 0;
+
+            for (String id : hdata.getHotels()) {
+                Hotel hotel = hdata.getHotel(id);
+
+                // hotelid, hotelname, city, address, latitude, longitude
+                hotels.setString(1, id);
+                hotels.setString(2, hotel.getHotelName());
+                hotels.setString(3, hotel.getAddress().getCity());
+                hotels.setString(4, hotel.getAddress().toString());
+                hotels.setDouble(5, hotel.getAddress().getLatitude());
+                hotels.setDouble(6, hotel.getAddress().getLongitude());
+                hotelRows = addBatch(hotels, hotelRows, batchSize);
+            }
+
+            // register reviewers with random passwords, they have to be reset before logging in
+            for (String username : usernames) {
+                if (checkUsername(username) == Status.USERNAME_NOT_GOOD) {
+                    continue;
+                }
+
+                byte[] saltBytes = new byte[16];
+                random.nextBytes(saltBytes);
+                String usersalt = encodeHex(saltBytes, 32);
+                random.nextBytes(saltBytes);
+                String randomPassword = "@" + encodeHex(saltBytes, 32);
+
+                users.setString(1, username);
+                users.setString(2, getHash(randomPassword, usersalt));
+                users.setString(3, usersalt);
+                userRows = addBatch(users, userRows, batchSize);
+            }
+
+            if (hotelRows > 0) {
+                hotels.executeBatch();
+            }
+            if (userRows > 0) {
+                users.executeBatch();
+            }
+            connection.commit();
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM hotelapp_reviews;");
+                connection.commit();
+            }
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
         }
 
         System.out.println("Completed loading from data structure to database.");
     }
+
+    /**
+     * Add the current parameters of a statement to its batch, and send the batch once it is full.
+     *
+     * @param statement
+     * @param pending - number of rows already in the batch
+     * @param batchSize
+     * @return int - number of rows in the batch after adding this one
+     * @throws SQLException
+     */
+    private static int addBatch(PreparedStatement statement, int pending, int batchSize) throws SQLException {
+        statement.addBatch();
+
+        if (++pending < batchSize) {
+            return pending;
+        }
+
+        statement.executeBatch();
+
+        return 0;
+    }
+
+    /**
+     * Rebuilds the hotel rating aggregates from the reviews in database.
+     * Usage: java data.DatabaseHandler rebuildStats
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("rebuildStats")) {
+            try {
+                int hotels = getInstance().rebuildHotelStats();
+                System.out.println("Rebuilt rating aggregates of " + hotels + " hotels.");
+            }
+            catch (SQLException e) {
+                System.out.println("Unable to rebuild rating aggregates. " + e);
+            }
+        }
+        else {
+            System.out.println("Usage: java data.DatabaseHandler rebuildStats");
+        }
+    }
 }
@@ -13,6 +13,11 @@ import java.util.regex.Pattern;
  * Expedia for scarping data from Expedia website.
  */
 public class Expedia {
+    /** Shown when Expedia has no phone number of a hotel. */
+    public final static String NO_PHONE = "Not Available";
+    /** Shown when Expedia has no photo of a hotel, or Google has none of an attraction. */
+    public final static String NO_PHOTO = "https://i.imgur.com/9OueEQZ.png";
+
     private final static String HOST = "www.expedia.com";
     private final static String FUNCTION = "Hotel-Information";
     private final static int PORT = 443;
@@ -65,8 +70,8 @@ public class Expedia {
             result.put("photo", m.group(2));
         }
         else {
-            result.put("phone", "Not Available");
-            result.put("photo", "https://i.imgur.com/9OueEQZ.png");
+            result.put("phone", NO_PHONE);
+            result.put("photo", NO_PHOTO);
         }
 
         return result;
@@ -0,0 +1,180 @@
+package data;
+
+import hotelapp.Hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * HotelDetail, everything the hotel detail card shows about one hotel for one user:
+ * the hotel itself, its Expedia phone and photo, its average rating, and whether the user saved the hotel
+ * and checked its Expedia link.
+ *
+ * @author BrianSung
+ */
+public class HotelDetail {
+    private final String hotelId;
+    private final String hotelName;
+    private final String city;
+    private final String address;
+    private final double latitude;
+    private final double longitude;
+    private final double rating;
+    private final boolean saved;
+    private final boolean expediaChecked;
+    private boolean expedia;
+    private String phone;
+    private String photo;
+
+    /**
+     * Constructor from the current row of the hotel detail query.
+     *
+     * @param result
+     * @throws SQLException
+     */
+    HotelDetail(ResultSet result) throws SQLException {
+        this.hotelId = result.getString("hotelid");
+        this.hotelName = result.getString("hotelname");
+        this.city = result.getString("city");
+        this.address = result.getString("address");
+        this.latitude = result.getDouble("latitude");
+        this.longitude = result.getDouble("longitude");
+        this.rating = result.getDouble("rating");
+        this.saved = result.getInt("saved") == 1;
+        this.expediaChecked = result.getInt("expediachecked") == 1;
+        this.expedia = result.getString("expediaid") != null;
+        this.phone = result.getString("phone");
+        this.photo = result.getString("photo");
+    }
+
+    /**
+     * Constructor from a hotel and the current row of the user detail query, which has the Expedia and user
+     * columns of the hotel detail query.
+     *
+     * @param hotel - hotel with its average rating
+     * @param result
+     * @throws SQLException
+     */
+    HotelDetail(Hotel hotel, ResultSet result) throws SQLException {
+        this.hotelId = hotel.getHotelId();
+        this.hotelName = hotel.getHotelName();
+        this.city = hotel.getAddress().getCity();
+        this.address = hotel.getAddress().getStreetAddress();
+        this.latitude = hotel.getAddress().getLatitude();
+        this.longitude = hotel.getAddress().getLongitude();
+        this.rating = Math.round(hotel.getAverageRating() * 100) / 100.0;
+        this.saved = result.getInt("saved") == 1;
+        this.expediaChecked = result.getInt("expediachecked") == 1;
+        this.expedia = result.getString("expediaid") != null;
+        this.phone = result.getString("phone");
+        this.photo = result.getString("photo");
+    }
+
+    /**
+     * Set the Expedia phone and photo, after they have been scraped.
+     *
+     * @param phone
+     * @param photo
+     */
+    void setExpedia(String phone, String photo) {
+        this.expedia = true;
+        this.phone = phone;
+        this.photo = photo;
+    }
+
+    /**
+     * Return the hotel id.
+     * @return String
+     */
+    public String getHotelId() {
+        return this.hotelId;
+    }
+
+    /**
+     * Return the hotel name.
+     * @return String
+     */
+    public String getHotelName() {
+        return this.hotelName;
+    }
+
+    /**
+     * Return the city of the hotel.
+     * @return String
+     */
+    public String getCity() {
+        return this.city;
+    }
+
+    /**
+     * Return the street address of the hotel.
+     * @return String
+     */
+    public String getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Return the latitude of the hotel.
+     * @return double
+     */
+    public double getLatitude() {
+        return this.latitude;
+    }
+
+    /**
+     * Return the longitude of the hotel.
+     * @return double
+     */
+    public double getLongitude() {
+        return this.longitude;
+    }
+
+    /**
+     * Return the average rating, 0 if the hotel has no reviews.
+     * @return double
+     */
+    public double getRating() {
+        return this.rating;
+    }
+
+    /**
+     * Return true if the user saved the hotel.
+     * @return boolean
+     */
+    public boolean isSaved() {
+        return this.saved;
+    }
+
+    /**
+     * Return true if the user checked the Expedia link of the hotel.
+     * @return boolean
+     */
+    public boolean isExpediaChecked() {
+        return this.expediaChecked;
+    }
+
+    /**
+     * Return the phone number from Expedia.
+     * @return String
+     */
+    public String getPhone() {
+        return (this.phone == null) ? Expedia.NO_PHONE : this.phone;
+    }
+
+    /**
+     * Return the photo link from Expedia.
+     * @return String
+     */
+    public String getPhoto() {
+        return (this.photo == null) ? Expedia.NO_PHOTO : this.photo;
+    }
+
+    /**
+     * Return true if the hotel has Expedia data in the database.
+     * @return boolean
+     */
+    boolean hasExpedia() {
+        return this.expedia;
+    }
+}
@@ -0,0 +1,76 @@
+package data;
+
+import hotelapp.Hotel;
+import hotelapp.Review;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * HotelRepository, the hotel and review lists of the Hotels page and the hotel detail card.
+ * The filters, sorting and paging come from the hotel and review data sessions, as set by HotelServlet and
+ * ReviewServlet.
+ *
+ * @author BrianSung
+ */
+public interface HotelRepository {
+
+    /**
+     * Return the number of hotels that match the city and hotel name filters.
+     *
+     * @param ds - hotel data session
+     * @return int - number of hotels
+     * @throws SQLException
+     */
+    int countHotels(DataSession ds) throws SQLException;
+
+    /**
+     * Return one page of the hotels that match the city and hotel name filters, in the sorting of the session.
+     *
+     * @param ds - hotel data session
+     * @param page - page number starting from 1
+     * @param pageSize - number of hotels per page
+     * @return List - hotels with their average rating
+     * @throws SQLException
+     */
+    List<Hotel> getHotels(DataSession ds, int page, int pageSize) throws SQLException;
+
+    /**
+     * Return the hotel detail card of a hotel for a user: the hotel, its average rating, its Expedia data, and
+     * whether the user saved the hotel and checked its Expedia link.
+     *
+     * @param hotelId
+     * @param username
+     * @return HotelDetail - hotel detail, or null if there is no such hotel
+     * @throws SQLException
+     */
+    HotelDetail getHotelDetail(String hotelId, String username) throws SQLException;
+
+    /**
+     * Return the number of reviews of the hotel of the session.
+     *
+     * @param ds - review data session
+     * @return int - number of reviews
+     * @throws SQLException
+     */
+    int countReviews(DataSession ds) throws SQLException;
+
+    /**
+     * Return one page of the reviews of the hotel of the session, in the sorting of the session.
+     *
+     * @param ds - review data session
+     * @param page - page number starting from 1
+     * @param pageSize - number of reviews per page
+     * @return List - reviews, the review text is not required
+     * @throws SQLException
+     */
+    List<Review> getReviews(DataSession ds, int page, int pageSize) throws SQLException;
+
+    /**
+     * Called after the reviews of a hotel have been written.
+     *
+     * @param hotelId
+     * @throws SQLException
+     */
+    void reviewsChanged(String hotelId) throws SQLException;
+}
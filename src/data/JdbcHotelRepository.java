@@ -0,0 +1,111 @@
+package data;
+
+import hotelapp.Address;
+import hotelapp.Hotel;
+import hotelapp.InvalidRatingException;
+import hotelapp.Review;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JdbcHotelRepository to answer hotel and review lists and hotel details with the queries of DatabaseHandler.
+ *
+ * @author BrianSung
+ */
+public class JdbcHotelRepository implements HotelRepository {
+    private final DatabaseHandler dbhandler;
+
+    /**
+     * Constructor.
+     *
+     * @param dbhandler
+     */
+    public JdbcHotelRepository(DatabaseHandler dbhandler) {
+        this.dbhandler = dbhandler;
+    }
+
+    @Override
+    public int countHotels(DataSession ds) throws SQLException {
+        return this.dbhandler.countHotels(ds);
+    }
+
+    @Override
+    public List<Hotel> getHotels(DataSession ds, int page, int pageSize) throws SQLException {
+        List<Hotel> hotels = new ArrayList<>();
+
+        try (ResultSet result = this.dbhandler.getHotels(ds, page, pageSize)) {
+            while (result.next()) {
+                Address address = new Address(result.getString("city"), null, null,
+                        result.getDouble("latitude"), result.getDouble("longitude"));
+                Hotel hotel = new Hotel(result.getString("hotelid"), result.getString("hotelname"), address);
+                hotel.setAverageRating(result.getDouble("rating"));
+                hotels.add(hotel);
+            }
+        }
+
+        return hotels;
+    }
+
+    @Override
+    public HotelDetail getHotelDetail(String hotelId, String username) throws SQLException {
+        return this.dbhandler.getHotelDetail(hotelId, username);
+    }
+
+    @Override
+    public int countReviews(DataSession ds) throws SQLException {
+        return this.dbhandler.countReviews(ds);
+    }
+
+    /**
+     * Return one page of the reviews of the hotel of the session.
+     * Remembers where the page ends, so the next pages can seek from it.
+     *
+     * @param ds - review data session
+     * @param page - page number starting from 1
+     * @param pageSize - number of reviews per page
+     * @return List - reviews without review text
+     * @throws SQLException
+     */
+    @Override
+    public List<Review> getReviews(DataSession ds, int page, int pageSize) throws SQLException {
+        List<Review> reviews = new ArrayList<>();
+        Timestamp lastDate = null;
+        int lastId = 0;
+
+        try (ResultSet result = this.dbhandler.getReviews(ds, page, pageSize)) {
+            while (result.next()) {
+                lastDate = result.getTimestamp("date");
+                lastId = result.getInt("reviewid");
+
+                try {
+                    reviews.add(new Review(ds.getElement("hotelid"), result.getString("reviewid"),
+                            result.getInt("rating"), result.getString("title"), null, true,
+                            lastDate.toString(), result.getString("username")));
+                }
+                catch (ParseException | InvalidRatingException e) {
+                    System.out.println(e);
+                }
+            }
+        }
+
+        if (lastDate != null) {
+            this.dbhandler.setReviewCursor(ds, page, pageSize, lastDate, lastId);
+        }
+
+        return reviews;
+    }
+
+    /**
+     * Nothing to do, the lists are read from the database.
+     *
+     * @param hotelId
+     */
+    @Override
+    public void reviewsChanged(String hotelId) {
+    }
+}
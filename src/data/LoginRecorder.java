@@ -0,0 +1,194 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoginRecorder to write login records behind the login request.
+ * Records wait in a bounded buffer and are inserted in batches, when batchSize records are pending or every
+ * flushInterval milliseconds. Each record keeps the time of the login, so a late insert does not change it.
+ * Records that do not fit into the buffer are dropped and counted.
+ *
+ * @author BrianSung
+ */
+public class LoginRecorder {
+    private static final String INSERT_SQL =
+            "INSERT INTO hotelapp_logins (username, ipaddress, date) VALUES (?, ?, ?);";
+
+    private final DatabaseConnector db;
+    private final BlockingQueue<LoginRecord> buffer;
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested;
+    private final AtomicLong dropped;
+
+    /**
+     * Constructor.
+     *
+     * @param db - connector to borrow connections from
+     * @param capacity - maximum number of pending records
+     * @param batchSize - number of pending records that triggers a flush
+     * @param flushInterval - milliseconds between periodic flushes
+     */
+    public LoginRecorder(DatabaseConnector db, int capacity, int batchSize, long flushInterval) {
+        this.db = db;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushRequested = new AtomicBoolean(false);
+        this.dropped = new AtomicLong();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "login-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = Math.max(1, flushInterval);
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffer a login record. Never blocks.
+     *
+     * @param username
+     * @param ipAddress
+     * @return boolean - false if the buffer is full and the record has been dropped
+     */
+    public boolean record(String username, String ipAddress) {
+        if (!this.buffer.offer(new LoginRecord(username, ipAddress, new Timestamp(System.currentTimeMillis())))) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        if (this.buffer.size() >= this.batchSize && this.flushRequested.compareAndSet(false, true)) {
+            try {
+                this.flusher.execute(this::flushQuietly);
+            }
+            catch (RuntimeException e) {
+                this.flushRequested.set(false);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Insert every pending record. Called by the flusher thread, and by readers that need to see their own logins.
+     *
+     * @return int - number of records inserted
+     * @throws SQLException
+     */
+    public synchronized int flush() throws SQLException {
+        this.flushRequested.set(false);
+
+        if (this.buffer.isEmpty()) {
+            return 0;
+        }
+
+        List<LoginRecord> records = new ArrayList<>();
+        this.buffer.drainTo(records);
+
+        try (Connection connection = this.db.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            connection.setAutoCommit(false);
+
+            for (LoginRecord record : records) {
+                statement.setString(1, record.username);
+                statement.setString(2, record.ipAddress);
+                statement.setTimestamp(3, record.date);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            connection.commit();
+        }
+        catch (SQLException e) {
+            // give the records another chance with the next flush, as far as they fit
+            for (LoginRecord record : records) {
+                if (!this.buffer.offer(record)) {
+                    this.dropped.incrementAndGet();
+                }
+            }
+            throw e;
+        }
+
+        return records.size();
+    }
+
+    /**
+     * Return the number of records waiting to be inserted.
+     *
+     * @return int
+     */
+    public int getPendingCount() {
+        return this.buffer.size();
+    }
+
+    /**
+     * Return the number of records dropped because the buffer was full.
+     *
+     * @return long
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Stop the periodic flush and insert the remaining records.
+     */
+    public void shutdown() {
+        this.flusher.shutdown();
+
+        try {
+            this.flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (SQLException e) {
+            System.out.println("Unable to write " + getPendingCount() + " login records. " + e);
+        }
+
+        if (getDroppedCount() > 0) {
+            System.out.println("Dropped " + getDroppedCount() + " login records.");
+        }
+    }
+
+    /**
+     * Flush from the flusher thread, reporting failures instead of throwing them.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        }
+        catch (SQLException e) {
+            System.out.println("Unable to write login records. " + e);
+        }
+    }
+
+    /**
+     * One login of a user.
+     */
+    private static class LoginRecord {
+        private final String username;
+        private final String ipAddress;
+        private final Timestamp date;
+
+        private LoginRecord(String username, String ipAddress, Timestamp date) {
+            this.username = username;
+            this.ipAddress = ipAddress;
+            this.date = date;
+        }
+    }
+}
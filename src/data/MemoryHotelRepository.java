@@ -0,0 +1,325 @@
+package data;
+
+import concurrent.ReentrantReadWriteLock;
+import hotelapp.Hotel;
+import hotelapp.InvalidRatingException;
+import hotelapp.Review;
+import hotelapp.StringPool;
+import hotelapp.ThreadSafeHotelData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MemoryHotelRepository to answer hotel and review lists from a ThreadSafeHotelData in this process.
+ * All available hotels and reviews are loaded from the database when the repository is created. After a write
+ * to the reviews of a hotel, its reviews are read again, so the data stays in sync with the writes made through
+ * this server; writes made by other servers are not seen. Reloads of the same hotel are serialized, so a reload
+ * that read older reviews can not replace the reviews installed by a later one.
+ * Filtering and sorting follow the SQL of DatabaseHandler: city prefix and hotel name substring ignoring case,
+ * ratings rounded to two decimals, and ties broken by hotel id or review id.
+ * Hotel ids, cities and usernames are shared through a StringPool.
+ * The hotel detail card takes the hotel and its rating from memory; only the Expedia data and the saved states of
+ * the user, which are not kept in memory, are read from the database.
+ *
+ * @author BrianSung
+ */
+public class MemoryHotelRepository implements HotelRepository {
+    private static final String HOTELS_SQL = "SELECT hotelid, hotelname, city, address, latitude, longitude " +
+            "FROM hotelapp_hotels WHERE status = 1;";
+    private static final String REVIEWS_SQL = "SELECT reviewid, hotelid, username, rating, recommend, title, " +
+            "review, date FROM hotelapp_reviews WHERE status = 1;";
+    private static final String HOTEL_REVIEWS_SQL = "SELECT reviewid, hotelid, username, rating, recommend, " +
+            "title, review, date FROM hotelapp_reviews WHERE hotelid = ? AND status = 1;";
+
+    private static final int STRIPES = 64;
+
+    private final DatabaseHandler dbhandler;
+    private final DatabaseConnector db;
+    private final ThreadSafeHotelData data;
+    private final StringPool pool;
+    private final ReentrantReadWriteLock[] stripes;
+
+    /**
+     * Constructor. Loads all available hotels and reviews.
+     *
+     * @param dbhandler - handler to read the user data of the hotel detail card with
+     * @param db - connector to borrow connections from
+     * @throws SQLException
+     */
+    public MemoryHotelRepository(DatabaseHandler dbhandler, DatabaseConnector db) throws SQLException {
+        this.dbhandler = dbhandler;
+        this.db = db;
+        this.data = new ThreadSafeHotelData();
+        this.pool = new StringPool();
+        this.stripes = new ReentrantReadWriteLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        Map<String, List<Review>> reviews = new HashMap<>();
+        int skipped = 0;
+
+        try (Connection connection = this.db.getConnection();
+             PreparedStatement hotels = connection.prepareStatement(HOTELS_SQL);
+             PreparedStatement all = connection.prepareStatement(REVIEWS_SQL)) {
+            ResultSet result = hotels.executeQuery();
+            while (result.next()) {
+                this.data.addHotel(this.pool.get(result.getString("hotelid")), result.getString("hotelname"),
+                        this.pool.get(result.getString("city")), null, result.getString("address"),
+                        result.getDouble("latitude"), result.getDouble("longitude"));
+            }
+
+            result = all.executeQuery();
+            while (result.next()) {
+                Review review = toReview(result);
+                if (review != null) {
+                    reviews.computeIfAbsent(review.getHotelId(), key -> new ArrayList<>()).add(review);
+                }
+                else {
+                    skipped++;
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Review>> entry : reviews.entrySet()) {
+            this.data.setHotelReviews(entry.getKey(), entry.getValue());
+        }
+        this.data.publish();
+
+        System.out.println("Loaded " + this.data.getHotels().size() + " hotels into memory, skipped " + skipped
+                + " invalid reviews.");
+        System.out.println(this.pool);
+    }
+
+    @Override
+    public int countHotels(DataSession ds) {
+        return findHotels(ds).size();
+    }
+
+    @Override
+    public List<Hotel> getHotels(DataSession ds, int page, int pageSize) {
+        List<Hotel> hotels = findHotels(ds);
+        Comparator<Hotel> order = hotelOrder(ds.getElement(ds.getElement("sortColumn")));
+
+        if (ds.getElement("sortType").equals("DESC")) {
+            order = order.reversed();
+        }
+        hotels.sort(order.thenComparing(Hotel::getHotelId));
+
+        return page(hotels, page, pageSize);
+    }
+
+    @Override
+    public HotelDetail getHotelDetail(String hotelId, String username) throws SQLException {
+        Hotel hotel = this.data.getHotel(hotelId);
+
+        return (hotel == null) ? null : this.dbhandler.getHotelDetail(hotel, username);
+    }
+
+    @Override
+    public int countReviews(DataSession ds) {
+        Set<Review> reviews = this.data.getHotelReviews(ds.getElement("hotelid"));
+
+        return (reviews == null) ? 0 : reviews.size();
+    }
+
+    @Override
+    public List<Review> getReviews(DataSession ds, int page, int pageSize) {
+        Set<Review> reviews = this.data.getHotelReviews(ds.getElement("hotelid"));
+
+        if (reviews == null) {
+            return Collections.emptyList();
+        }
+
+        List<Review> sorted = new ArrayList<>(reviews);
+        String column = ds.getElement(ds.getElement("sortColumn"));
+        Comparator<Review> order = reviewOrder(column);
+
+        if (column.equals("r.date")) {
+            // ties follow the direction of the date, as in DatabaseHandler
+            order = order.thenComparing(review -> Integer.parseInt(review.getReviewId()));
+        }
+        if (ds.getElement("sortType").equals("DESC")) {
+            order = order.reversed();
+        }
+        sorted.sort(order.thenComparing(review -> Integer.parseInt(review.getReviewId())));
+
+        return page(sorted, page, pageSize);
+    }
+
+    /**
+     * Read the available reviews of the hotel from the database again, and publish them to the readers.
+     * Reports the reviews skipped because they are invalid.
+     * Holds the stripe of the hotel from the read until the reviews are published.
+     *
+     * @param hotelId
+     * @throws SQLException
+     */
+    @Override
+    public void reviewsChanged(String hotelId) throws SQLException {
+        ReentrantReadWriteLock stripe = this.stripes[Math.floorMod(hotelId.hashCode(), STRIPES)];
+        stripe.lockWrite();
+
+        try {
+            List<Review> reviews = new ArrayList<>();
+            int skipped = 0;
+
+            try (Connection connection = this.db.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(HOTEL_REVIEWS_SQL)) {
+                statement.setString(1, hotelId);
+
+                ResultSet result = statement.executeQuery();
+                while (result.next()) {
+                    Review review = toReview(result);
+                    if (review != null) {
+                        reviews.add(review);
+                    }
+                    else {
+                        skipped++;
+                    }
+                }
+            }
+            if (skipped > 0) {
+                System.out.println("Skipped " + skipped + " invalid reviews of hotel " + hotelId + ".");
+            }
+
+            this.data.setHotelReviews(hotelId, reviews);
+            this.data.publish();
+        }
+        finally {
+            stripe.unlockWrite();
+        }
+    }
+
+    /**
+     * Return copies of the hotels that match the city and hotel name filters, with rounded ratings.
+     *
+     * @param ds - hotel data session
+     * @return List - matching hotels, unsorted
+     */
+    private List<Hotel> findHotels(DataSession ds) {
+        String city = filter(ds.getElement("city"));
+        String hotelname = filter(ds.getElement("hotelname"));
+        List<Hotel> hotels = new ArrayList<>();
+
+        for (String hotelId : this.data.getHotels()) {
+            Hotel hotel = this.data.getHotel(hotelId);
+
+            if ((city == null || lower(hotel.getAddress().getCity()).startsWith(city))
+                    && (hotelname == null || lower(hotel.getHotelName()).contains(hotelname))) {
+                Hotel copy = new Hotel(hotel.getHotelId(), hotel.getHotelName(), hotel.getAddress());
+                copy.setAverageRating(Math.round(hotel.getAverageRating() * 100) / 100.0);
+                hotels.add(copy);
+            }
+        }
+
+        return hotels;
+    }
+
+    /**
+     * Return a filter of the hotel data session in lower case, or null if it is missing or empty and does not
+     * filter, as in the queries of DatabaseHandler.
+     *
+     * @param value - e.g. the city the user typed
+     * @return String
+     */
+    private static String filter(String value) {
+        return (value == null || value.isEmpty()) ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Return a hotel value in lower case, or an empty string if it is missing.
+     *
+     * @param value
+     * @return String
+     */
+    private static String lower(String value) {
+        return (value == null) ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Return the ascending order of hotels for a sort column of the hotel data session.
+     *
+     * @param column - e.g. h.hotelname
+     * @return Comparator
+     */
+    private static Comparator<Hotel> hotelOrder(String column) {
+        switch (column) {
+            case "h.hotelname":
+                return Comparator.comparing(Hotel::getHotelName, String.CASE_INSENSITIVE_ORDER);
+            case "h.city":
+                return Comparator.comparing(hotel -> hotel.getAddress().getCity(), String.CASE_INSENSITIVE_ORDER);
+            case "r.rating":
+                return Comparator.comparingDouble(Hotel::getAverageRating);
+            default:
+                return Comparator.comparing(Hotel::getHotelId);
+        }
+    }
+
+    /**
+     * Return the ascending order of reviews for a sort column of the review data session.
+     *
+     * @param column - e.g. r.date
+     * @return Comparator
+     */
+    private static Comparator<Review> reviewOrder(String column) {
+        switch (column) {
+            case "r.username":
+                return Comparator.comparing(Review::getUsername, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            case "r.title":
+                return Comparator.comparing(Review::getReviewTitle,
+                        Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            case "r.rating":
+                return Comparator.comparingInt(Review::getRating);
+            case "r.date":
+                return Comparator.comparingLong(Review::getTime);
+            default:
+                return Comparator.comparing(review -> Integer.parseInt(review.getReviewId()));
+        }
+    }
+
+    /**
+     * Return one page of a sorted list.
+     *
+     * @param list
+     * @param page - page number starting from 1
+     * @param pageSize
+     * @return List - the rows of the page
+     */
+    private static <T> List<T> page(List<T> list, int page, int pageSize) {
+        int from = Math.min(list.size(), DatabaseHandler.getOffset(page, pageSize));
+
+        return new ArrayList<>(list.subList(from, Math.min(list.size(), from + pageSize)));
+    }
+
+    /**
+     * Return the review of the current row, or null if it has an invalid date or rating.
+     * Invalid rows are counted and reported by the callers.
+     *
+     * @param result
+     * @return Review
+     * @throws SQLException
+     */
+    private Review toReview(ResultSet result) throws SQLException {
+        try {
+            return new Review(this.pool.get(result.getString("hotelid")), result.getString("reviewid"),
+                    result.getInt("rating"), result.getString("title"), result.getString("review"),
+                    result.getInt("recommend") == 1, result.getTimestamp("date").toString(),
+                    this.pool.get(result.getString("username")));
+        }
+        catch (ParseException | InvalidRatingException e) {
+            return null;
+        }
+    }
+}
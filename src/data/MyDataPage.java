@@ -0,0 +1,89 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MyDataPage, one window of a MyPage list: the user's reviews, saved hotels, liked reviews or checked Expedia
+ * links, newest first, and whether the list goes on after this window.
+ *
+ * @author BrianSung
+ */
+public class MyDataPage {
+    private final List<Item> items;
+    private final boolean hasMore;
+
+    /**
+     * Constructor.
+     *
+     * @param items - items of the window
+     * @param hasMore - true if there are items after the window
+     */
+    MyDataPage(List<Item> items, boolean hasMore) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Return the items of this window.
+     * @return List
+     */
+    public List<Item> getItems() {
+        return this.items;
+    }
+
+    /**
+     * Return true if there are items after this window.
+     * @return boolean
+     */
+    public boolean hasMore() {
+        return this.hasMore;
+    }
+
+    /**
+     * One row of a MyPage list.
+     */
+    public static class Item {
+        private final String id;
+        private final String label;
+        private final String link;
+
+        /**
+         * Constructor.
+         *
+         * @param id - hotel id or review id the row opens
+         * @param label - text to display, hotel name or review title
+         * @param link - Expedia link, null for the other lists
+         */
+        Item(String id, String label, String link) {
+            this.id = id;
+            this.label = label;
+            this.link = link;
+        }
+
+        /**
+         * Return the hotel id or review id the row opens.
+         * @return String
+         */
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Return the text to display.
+         * @return String
+         */
+        public String getLabel() {
+            return this.label;
+        }
+
+        /**
+         * Return the Expedia link, null for lists other than expediaLinks.
+         * @return String
+         */
+        public String getLink() {
+            return this.link;
+        }
+    }
+}
@@ -7,15 +7,39 @@ package data;
  */
 public class MySqlQuery {
 
-    /** Used to determine if necessary tables are provided. */
-    public static final String TABLES_SQL =
-            "SELECT COUNT(table_name) AS num " +
-                    "FROM information_schema.tables " +
-                    "WHERE table_name LIKE 'hotelapp_%';";
+    /** Used to determine if a table exists in the current database. */
+    public static final String TABLE_EXISTS_SQL =
+            "SELECT table_name FROM information_schema.tables " +
+                    "WHERE table_schema = DATABASE() AND table_name = ?;";
+
+    /** Used to determine if an index exists on a table of the current database. */
+    public static final String INDEX_EXISTS_SQL =
+            "SELECT index_name FROM information_schema.statistics " +
+                    "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1;";
+
+    /** Used to determine if a column exists on a table of the current database. */
+    public static final String COLUMN_EXISTS_SQL =
+            "SELECT column_name FROM information_schema.columns " +
+                    "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?;";
+
+    /** Used to create the table recording applied schema migrations. */
+    public static final String CREATE_SCHEMAVERSION_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS hotelapp_schemaversion (" +
+                    "version INTEGER PRIMARY KEY" +
+                    ", description VARCHAR(128) NOT NULL" +
+                    ", applied TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL);";
+
+    /** Used to get the highest applied schema migration. */
+    public static final String SCHEMAVERSION_SQL =
+            "SELECT MAX(version) AS version FROM hotelapp_schemaversion;";
+
+    /** Used to record an applied schema migration. */
+    public static final String INSERT_SCHEMAVERSION_SQL =
+            "INSERT INTO hotelapp_schemaversion (version, description) VALUES (?, ?);";
 
     /** Used to create user table for this project. */
     public static final String CREATE_USER_TABLE_SQL =
-            "CREATE TABLE hotelapp_users (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_users (" +
                     "userid INTEGER AUTO_INCREMENT PRIMARY KEY, " +
                     "username VARCHAR(32) NOT NULL UNIQUE, " +
                     "password CHAR(64) NOT NULL, " +
@@ -24,7 +48,7 @@ public class MySqlQuery {
 
     /** Used to create hotel table for this project. */
     public static final String CREATE_HOTEL_TABLE_SQL =
-            "CREATE TABLE hotelapp_hotels (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_hotels (" +
                     "hotelid VARCHAR(32) PRIMARY KEY, " +
                     "hotelname VARCHAR(128) NOT NULL UNIQUE, " +
                     "city VARCHAR(32) NOT NULL, " +
@@ -35,7 +59,7 @@ public class MySqlQuery {
 
     /** Used to create review table for this project. */
     public static final String CREATE_REVIEW_TABLE_SQL =
-            "CREATE TABLE hotelapp_reviews (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_reviews (" +
                     "reviewid INTEGER AUTO_INCREMENT PRIMARY KEY, " +
                     "hotelid VARCHAR(32) NOT NULL, " +
                     "username VARCHAR(32) NOT NULL, " +
@@ -48,13 +72,13 @@ public class MySqlQuery {
 
     /** Used to create Expedia data table for this project. */
     public static final String CREATE_EXPEDIA_TABLE_SQL =
-            "CREATE TABLE hotelapp_expedia ( " +
+            "CREATE TABLE IF NOT EXISTS hotelapp_expedia ( " +
                     "hotelid VARCHAR(32) PRIMARY KEY" +
                     ", phone VARCHAR(32), photo VARCHAR(256));";
 
     /** Used to create liked reviews table for this project. */
     public static final String CREATE_LIKEREVIEW_TABLE_SQL =
-            "CREATE TABLE hotelapp_likereview (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_likereview (" +
                     "reviewid INTEGER NOT NULL" +
                     ", username VARCHAR(32) NOT NULL" +
                     ", date TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL" +
@@ -62,7 +86,7 @@ public class MySqlQuery {
 
     /** Used to create saved hotels table for this project. */
     public static final String CREATE_LIKEHOTEL_TABLE_SQL =
-            "CREATE TABLE hotelapp_likehotel (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_likehotel (" +
                     "hotelid VARCHAR(32) NOT NULL" +
                     ", username VARCHAR(32) NOT NULL" +
                     ", date TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL" +
@@ -70,7 +94,7 @@ public class MySqlQuery {
 
     /** Used to create checked Expedia links table for this project. */
     public static final String CREATE_LIKEEXPEDIA_TABLE_SQL =
-            "CREATE TABLE hotelapp_likeexpedia (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_likeexpedia (" +
                     "hotelid VARCHAR(32) NOT NULL" +
                     ", username VARCHAR(32) NOT NULL" +
                     ", link VARCHAR(256)" +
@@ -79,23 +103,82 @@ public class MySqlQuery {
 
     /** Used to create API keys table for this project. */
     public static final String CREATE_APIKEYS_TABLE_SQL =
-            "CREATE TABLE hotelapp_apikeys (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_apikeys (" +
                     "hostname VARCHAR(32) NOT NULL" +
                     ", type VARCHAR(32) NOT NULL" +
                     ", token VARCHAR(64) NOT NULL);";
 
     /** Used to create user login data table for this project. */
     public static final String CREATE_LOGINS_TABLE_SQL =
-            "CREATE TABLE hotelapp_logins (" +
+            "CREATE TABLE IF NOT EXISTS hotelapp_logins (" +
                     "username VARCHAR(32) NOT NULL" +
                     ", ipaddress VARCHAR(64)" +
                     ", date TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL);";
 
+    /** Used to create the per-hotel rating aggregate table for this project. */
+    public static final String CREATE_HOTELSTATS_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS hotelapp_hotelstats (" +
+                    "hotelid VARCHAR(32) PRIMARY KEY" +
+                    ", ratingsum INTEGER DEFAULT 0 NOT NULL" +
+                    ", ratingcount INTEGER DEFAULT 0 NOT NULL" +
+                    ", recommendcount INTEGER DEFAULT 0 NOT NULL" +
+                    ", rating DOUBLE);";
+
+    /** Used to add a review's rating and recommendation (or their change) to a hotel's aggregate. */
+    public static final String UPDATE_HOTELSTATS_SQL =
+            "INSERT INTO hotelapp_hotelstats (hotelid, ratingsum, ratingcount, recommendcount) " +
+                    "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                    "ratingsum = ratingsum + VALUES(ratingsum), " +
+                    "ratingcount = ratingcount + VALUES(ratingcount), " +
+                    "recommendcount = recommendcount + VALUES(recommendcount);";
+
+    /** Used to remove all available reviews of a user from their hotels' aggregates. */
+    public static final String REMOVE_USER_HOTELSTATS_SQL =
+            "UPDATE hotelapp_hotelstats AS s INNER JOIN (" +
+                    "SELECT hotelid, SUM(rating) AS ratingsum, COUNT(*) AS ratingcount, " +
+                    "SUM(recommend) AS recommendcount FROM hotelapp_reviews " +
+                    "WHERE username = ? AND status = 1 GROUP BY hotelid) AS r ON r.hotelid = s.hotelid " +
+                    "SET s.ratingsum = s.ratingsum - r.ratingsum, s.ratingcount = s.ratingcount - r.ratingcount, " +
+                    "s.recommendcount = s.recommendcount - r.recommendcount;";
+
+    /** Used to recompute the average rating of a hotel from its aggregate. */
+    public static final String REFRESH_HOTELSTATS_SQL =
+            "UPDATE hotelapp_hotelstats " +
+                    "SET rating = IF(ratingcount > 0, ROUND(ratingsum / ratingcount, 2), NULL) WHERE hotelid = ?;";
+
+    /** Used to recompute the average ratings of every hotel reviewed by a user. */
+    public static final String REFRESH_USER_HOTELSTATS_SQL =
+            "UPDATE hotelapp_hotelstats " +
+                    "SET rating = IF(ratingcount > 0, ROUND(ratingsum / ratingcount, 2), NULL) " +
+                    "WHERE hotelid IN (SELECT hotelid FROM hotelapp_reviews WHERE username = ?);";
+
+    /** Used to clear the rating aggregates before rebuilding them. */
+    public static final String CLEAR_HOTELSTATS_SQL =
+            "DELETE FROM hotelapp_hotelstats;";
+
+    /** Used to rebuild the rating aggregates of all hotels from the reviews. */
+    public static final String REBUILD_HOTELSTATS_SQL =
+            "INSERT INTO hotelapp_hotelstats (hotelid, ratingsum, ratingcount, recommendcount, rating) " +
+                    "SELECT hotelid, SUM(rating), COUNT(*), SUM(recommend), ROUND(AVG(rating), 2) " +
+                    "FROM hotelapp_reviews WHERE status = 1 GROUP BY hotelid;";
+
+    /** Used to recount the likes of every review from the liked reviews table. */
+    public static final String REBUILD_REVIEW_LIKES_SQL =
+            "UPDATE hotelapp_reviews AS r LEFT JOIN (" +
+                    "SELECT reviewid, COUNT(*) AS likes FROM hotelapp_likereview " +
+                    "WHERE status = 1 GROUP BY reviewid) AS l ON l.reviewid = r.reviewid " +
+                    "SET r.likes = IFNULL(l.likes, 0);";
+
     /** Used to insert a new user into the database. */
     public static final String REGISTER_SQL =
             "INSERT INTO hotelapp_users (username, password, usersalt) " +
                     "VALUES (?, ?, ?);";
 
+    /** Used to insert users in bulk, skipping usernames that already exist. */
+    public static final String REGISTER_IGNORE_SQL =
+            "INSERT IGNORE INTO hotelapp_users (username, password, usersalt) " +
+                    "VALUES (?, ?, ?);";
+
     /** Used to insert a new hotel into the database. */
     public static final String INSERT_HOTEL_SQL =
             "INSERT INTO hotelapp_hotels (hotelid, hotelname, city, address, latitude, longitude) " +
@@ -0,0 +1,209 @@
+package data;
+
+import org.json.simple.JSONObject;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryStats to record how often and how fast each named query of DatabaseHandler runs.
+ * Per query name it keeps the number of calls, errors and rows, and a latency histogram with buckets that double
+ * in size from 1 microsecond, from which percentiles are estimated to within a factor of two.
+ * Queries slower than the slow query threshold are printed.
+ *
+ * @author BrianSung
+ */
+public class QueryStats {
+    private static final int BUCKETS = 40;
+
+    private final Map<String, Stats> queries;
+    private final long slowQueryNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param slowQueryMillis - queries taking longer are printed, 0 or less to disable
+     */
+    public QueryStats(long slowQueryMillis) {
+        this.queries = new ConcurrentHashMap<>();
+        this.slowQueryNanos = (slowQueryMillis > 0) ? slowQueryMillis * 1000000 : Long.MAX_VALUE;
+    }
+
+    /**
+     * Record one execution of a query.
+     *
+     * @param name - logical query name, e.g. getHotels
+     * @param sql - statement text, printed for slow queries
+     * @param nanos - execution time
+     */
+    public void record(String name, String sql, long nanos) {
+        get(name).record(nanos);
+
+        if (nanos >= this.slowQueryNanos) {
+            System.out.println("Slow query " + name + ": " + (nanos / 1000000) + " ms. " + sql);
+        }
+    }
+
+    /**
+     * Record a failed execution of a query.
+     *
+     * @param name - logical query name
+     */
+    public void recordError(String name) {
+        get(name).errors.increment();
+    }
+
+    /**
+     * Add to the number of rows a query has read or changed.
+     *
+     * @param name - logical query name
+     * @param rows
+     */
+    public void addRows(String name, long rows) {
+        get(name).rows.add(rows);
+    }
+
+    /**
+     * Return a result set that adds the rows read from it to the row count of the query when it is closed.
+     *
+     * @param name - logical query name
+     * @param result
+     * @return ResultSet
+     */
+    public ResultSet countRows(String name, ResultSet result) {
+        Stats stats = get(name);
+        long[] rows = new long[1];
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && rows[0] >= 0) {
+                        stats.rows.add(rows[0]);
+                        rows[0] = -1;
+                    }
+
+                    try {
+                        Object value = method.invoke(result, args);
+                        if (method.getName().equals("next") && Boolean.TRUE.equals(value) && rows[0] >= 0) {
+                            rows[0]++;
+                        }
+                        return value;
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Return the statistics of all queries as JSON, sorted by query name.
+     * Per query: count, errors, rows, meanMs, p50Ms, p95Ms, p99Ms and maxMs.
+     *
+     * @return JSONObject
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(this.queries).entrySet()) {
+            json.put(entry.getKey(), entry.getValue().toJSON());
+        }
+
+        return json;
+    }
+
+    /**
+     * Return the statistics of a query, creating them on first use.
+     *
+     * @param name
+     * @return Stats
+     */
+    private Stats get(String name) {
+        return this.queries.computeIfAbsent(name, key -> new Stats());
+    }
+
+    /**
+     * Counters and latency histogram of one query.
+     */
+    private static class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        /**
+         * Record one execution time.
+         *
+         * @param nanos
+         */
+        private void record(long nanos) {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+            this.histogram.incrementAndGet(bucket(nanos));
+        }
+
+        /**
+         * Return the histogram bucket of an execution time: bucket i holds times below 2^i microseconds.
+         *
+         * @param nanos
+         * @return int
+         */
+        private static int bucket(long nanos) {
+            long micros = nanos / 1000;
+
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        }
+
+        /**
+         * Return the upper bound in milliseconds of the bucket that holds the given percentile.
+         *
+         * @param percentile - between 0 and 1
+         * @param total - number of recorded executions
+         * @return double
+         */
+        private double percentile(double percentile, long total) {
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.histogram.get(i);
+                if (seen >= rank) {
+                    return Math.min((1L << i) / 1000.0, this.maxNanos.get() / 1000000.0);
+                }
+            }
+
+            return this.maxNanos.get() / 1000000.0;
+        }
+
+        /**
+         * Return the statistics as JSON.
+         *
+         * @return JSONObject
+         */
+        @SuppressWarnings("unchecked")
+        private JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            long total = this.count.sum();
+
+            json.put("count", total);
+            json.put("errors", this.errors.sum());
+            json.put("rows", this.rows.sum());
+            json.put("meanMs", (total > 0) ? this.totalNanos.sum() / 1000000.0 / total : 0.0);
+            json.put("p50Ms", (total > 0) ? percentile(0.50, total) : 0.0);
+            json.put("p95Ms", (total > 0) ? percentile(0.95, total) : 0.0);
+            json.put("p99Ms", (total > 0) ? percentile(0.99, total) : 0.0);
+            json.put("maxMs", this.maxNanos.get() / 1000000.0);
+
+            return json;
+        }
+    }
+}
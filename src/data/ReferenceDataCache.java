@@ -0,0 +1,275 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ReferenceDataCache to serve the near-static data of hotelApp from memory: the cities, the API keys and the
+ * name, address and coordinates of every hotel.
+ * The data is loaded as one immutable snapshot that readers use without locking. A new snapshot is loaded every
+ * refreshInterval milliseconds, and soon after invalidate() is called for a write to the cached tables.
+ * If a refresh fails the previous snapshot is kept.
+ *
+ * @author BrianSung
+ */
+public class ReferenceDataCache {
+    private static final String CITIES_SQL = "SELECT city FROM hotelapp_hotels GROUP BY city ORDER BY city ASC;";
+    private static final String APIKEYS_SQL = "SELECT hostname, type, token FROM hotelapp_apikeys;";
+    private static final String HOTELS_SQL =
+            "SELECT hotelid, hotelname, city, address, latitude, longitude FROM hotelapp_hotels;";
+
+    private final DatabaseConnector db;
+    private final ScheduledExecutorService refresher;
+    private final AtomicBoolean refreshRequested;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Constructor. Loads the first snapshot.
+     *
+     * @param db - connector to borrow connections from
+     * @param refreshInterval - milliseconds between scheduled refreshes
+     * @throws SQLException
+     */
+    public ReferenceDataCache(DatabaseConnector db, long refreshInterval) throws SQLException {
+        this.db = db;
+        this.refreshRequested = new AtomicBoolean(false);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reference-data-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        refresh();
+
+        long interval = Math.max(1, refreshInterval);
+        this.refresher.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Load a new snapshot and replace the current one.
+     *
+     * @throws SQLException
+     */
+    public void refresh() throws SQLException {
+        this.refreshRequested.set(false);
+
+        try (Connection connection = this.db.getConnection();
+             Statement statement = connection.createStatement()) {
+            List<String> cities = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery(CITIES_SQL)) {
+                while (result.next()) {
+                    cities.add(result.getString("city"));
+                }
+            }
+
+            Map<String, String> apiKeys = new HashMap<>();
+            try (ResultSet result = statement.executeQuery(APIKEYS_SQL)) {
+                while (result.next()) {
+                    apiKeys.put(apiKey(result.getString("hostname"), result.getString("type")),
+                            result.getString("token"));
+                }
+            }
+
+            Map<String, HotelInfo> hotels = new HashMap<>();
+            try (ResultSet result = statement.executeQuery(HOTELS_SQL)) {
+                while (result.next()) {
+                    HotelInfo hotel = new HotelInfo(result);
+                    hotels.put(hotel.getHotelId(), hotel);
+                }
+            }
+
+            this.snapshot = new Snapshot(cities, apiKeys, hotels);
+        }
+    }
+
+    /**
+     * Mark the cached data as changed, so that a new snapshot is loaded in the background.
+     * Called after writes to the hotel or API key tables.
+     */
+    public void invalidate() {
+        if (this.refreshRequested.compareAndSet(false, true)) {
+            try {
+                this.refresher.execute(this::refreshQuietly);
+            }
+            catch (RuntimeException e) {
+                this.refreshRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Return all cities of hotels, sorted.
+     *
+     * @return List - city names
+     */
+    public List<String> getCities() {
+        return this.snapshot.cities;
+    }
+
+    /**
+     * Return the API key for a particular type of usage.
+     *
+     * @param hostname
+     * @param type
+     * @return String - API key, or null if there is none
+     */
+    public String getApiKey(String hostname, String type) {
+        return this.snapshot.apiKeys.get(apiKey(hostname, type));
+    }
+
+    /**
+     * Return the reference data of a hotel.
+     *
+     * @param hotelId
+     * @return HotelInfo - or null if the hotel is not in the snapshot
+     */
+    public HotelInfo getHotel(String hotelId) {
+        return (hotelId == null) ? null : this.snapshot.hotels.get(hotelId);
+    }
+
+    /**
+     * Return the number of hotels in the snapshot.
+     *
+     * @return int
+     */
+    public int getHotelCount() {
+        return this.snapshot.hotels.size();
+    }
+
+    /**
+     * Stop the scheduled refresh.
+     */
+    public void shutdown() {
+        this.refresher.shutdownNow();
+    }
+
+    /**
+     * Refresh from the refresher thread, reporting failures instead of throwing them.
+     */
+    private void refreshQuietly() {
+        try {
+            refresh();
+        }
+        catch (SQLException e) {
+            System.out.println("Unable to refresh reference data. " + e);
+        }
+    }
+
+    /**
+     * Return the map key of an API key.
+     *
+     * @param hostname
+     * @param type
+     * @return String
+     */
+    private static String apiKey(String hostname, String type) {
+        return hostname + "/" + type;
+    }
+
+    /**
+     * One immutable load of the reference data.
+     */
+    private static class Snapshot {
+        private final List<String> cities;
+        private final Map<String, String> apiKeys;
+        private final Map<String, HotelInfo> hotels;
+
+        private Snapshot(List<String> cities, Map<String, String> apiKeys, Map<String, HotelInfo> hotels) {
+            this.cities = Collections.unmodifiableList(cities);
+            this.apiKeys = Collections.unmodifiableMap(apiKeys);
+            this.hotels = Collections.unmodifiableMap(hotels);
+        }
+    }
+
+    /**
+     * Name, city, address and coordinates of a hotel.
+     */
+    public static class HotelInfo {
+        private final String hotelId;
+        private final String hotelName;
+        private final String city;
+        private final String address;
+        private final double latitude;
+        private final double longitude;
+
+        /**
+         * Constructor from the current row of a result set with the hotel table columns.
+         *
+         * @param result
+         * @throws SQLException
+         */
+        public HotelInfo(ResultSet result) throws SQLException {
+            this.hotelId = result.getString("hotelid");
+            this.hotelName = result.getString("hotelname");
+            this.city = result.getString("city");
+            this.address = result.getString("address");
+            this.latitude = result.getDouble("latitude");
+            this.longitude = result.getDouble("longitude");
+        }
+
+        /**
+         * Return the hotel id.
+         *
+         * @return String
+         */
+        public String getHotelId() {
+            return this.hotelId;
+        }
+
+        /**
+         * Return the hotel name.
+         *
+         * @return String
+         */
+        public String getHotelName() {
+            return this.hotelName;
+        }
+
+        /**
+         * Return the city of the hotel.
+         *
+         * @return String
+         */
+        public String getCity() {
+            return this.city;
+        }
+
+        /**
+         * Return the street address of the hotel.
+         *
+         * @return String
+         */
+        public String getAddress() {
+            return this.address;
+        }
+
+        /**
+         * Return the latitude of the hotel.
+         *
+         * @return double
+         */
+        public double getLatitude() {
+            return this.latitude;
+        }
+
+        /**
+         * Return the longitude of the hotel.
+         *
+         * @return double
+         */
+        public double getLongitude() {
+            return this.longitude;
+        }
+    }
+}
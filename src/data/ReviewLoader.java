@@ -0,0 +1,274 @@
+package data;
+
+import hotelapp.Review;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ReviewLoader to write parsed reviews into database while they are being parsed.
+ * Parser threads put reviews into a bounded queue, writer threads each holding their own pooled connection
+ * drain it in batches and commit every batch. Throughput and queue depth are reported while it runs.
+ * If a writer fails, the remaining reviews are drained and discarded so that parser threads never block,
+ * and finish() throws the failure.
+ *
+ * @author BrianSung
+ */
+public class ReviewLoader {
+    private static final long POLL_TIMEOUT = 100;
+    private static final long REPORT_INTERVAL = 2000;
+
+    private final DatabaseConnector db;
+    private final BlockingQueue<Review> queue;
+    private final int batchSize;
+    private final List<Thread> writers;
+    private final Set<String> usernames;
+    private final AtomicLong rows;
+    private final AtomicReference<SQLException> failure;
+    private final ScheduledExecutorService reporter;
+    private volatile boolean producing;
+    private long startTime;
+
+    /**
+     * Constructor.
+     *
+     * @param db - connector to borrow the writer connections from
+     * @param writers - number of writer threads
+     * @param batchSize - rows per batch
+     * @param queueSize - capacity of the review queue
+     */
+    public ReviewLoader(DatabaseConnector db, int writers, int batchSize, int queueSize) {
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.writers = new ArrayList<>();
+        this.usernames = ConcurrentHashMap.newKeySet();
+        this.rows = new AtomicLong();
+        this.failure = new AtomicReference<>();
+        this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "review-loader-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.producing = true;
+
+        for (int i = 0; i < Math.max(1, writers); i++) {
+            this.writers.add(new Thread(this::write, "review-loader-writer-" + i));
+        }
+    }
+
+    /**
+     * Return the queue the parser threads put reviews into.
+     *
+     * @return BlockingQueue
+     */
+    public BlockingQueue<Review> getQueue() {
+        return this.queue;
+    }
+
+    /**
+     * Start the writer threads and the progress report.
+     */
+    public void start() {
+        this.startTime = System.currentTimeMillis();
+
+        for (Thread writer : this.writers) {
+            writer.start();
+        }
+
+        this.reporter.scheduleAtFixedRate(this::report, REPORT_INTERVAL, REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Put a review into the queue, waiting while the queue is full.
+     *
+     * @param review
+     * @throws SQLException if interrupted while waiting
+     */
+    public void add(Review review) throws SQLException {
+        try {
+            this.queue.put(review);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while queueing reviews.", e);
+        }
+    }
+
+    /**
+     * Wait until the writers have written every queued review. Must be called after the parsers are done.
+     *
+     * @return Set - usernames of the written reviews
+     * @throws SQLException if a writer failed
+     */
+    public Set<String> finish() throws SQLException {
+        this.producing = false;
+
+        try {
+            for (Thread writer : this.writers) {
+                writer.join();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for review writers.", e);
+        }
+        finally {
+            this.reporter.shutdownNow();
+        }
+
+        report();
+        if (this.failure.get() != null) {
+            throw this.failure.get();
+        }
+
+        return this.usernames;
+    }
+
+    /**
+     * Return the number of reviews written so far.
+     *
+     * @return long
+     */
+    public long getRowCount() {
+        return this.rows.get();
+    }
+
+    /**
+     * Return the number of reviews waiting in the queue.
+     *
+     * @return int
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Return the average number of reviews written per second since start().
+     *
+     * @return double
+     */
+    public double getRowsPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - this.startTime);
+
+        return this.rows.get() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Print the progress of the load.
+     */
+    private void report() {
+        int depth = getQueueDepth();
+
+        System.out.println(String.format("Loaded %d reviews (%.0f rows/s), queue depth %d/%d.",
+                getRowCount(), getRowsPerSecond(), depth, depth + this.queue.remainingCapacity()));
+    }
+
+    /**
+     * Writer thread: drain the queue in batches until the parsers are done and the queue is empty.
+     */
+    private void write() {
+        List<Review> batch = new ArrayList<>(this.batchSize);
+
+        try (Connection connection = this.db.getConnection();
+             PreparedStatement statement = connection.prepareStatement(MySqlQuery.INSERT_REVIEW_SQL)) {
+            connection.setAutoCommit(false);
+
+            while (nextBatch(batch)) {
+                if (this.failure.get() == null) {
+                    writeBatch(connection, statement, batch);
+                }
+                batch.clear();
+            }
+        }
+        catch (SQLException e) {
+            this.failure.compareAndSet(null, e);
+            System.out.println("Unable to write reviews. " + e);
+
+            // keep the parsers from blocking on a full queue
+            while (nextBatch(batch)) {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for the next reviews and move up to batchSize of them into the batch.
+     *
+     * @param batch - empty list to fill
+     * @return boolean - false once the parsers are done and the queue is empty
+     */
+    private boolean nextBatch(List<Review> batch) {
+        try {
+            while (true) {
+                boolean done = !this.producing;
+                Review review = this.queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+
+                if (review != null) {
+                    batch.add(review);
+                    this.queue.drainTo(batch, this.batchSize - 1);
+                    return true;
+                }
+                else if (done) {
+                    return false;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Insert one batch of reviews and commit it. Reviews without username are skipped.
+     *
+     * @param connection - writer connection, not in autocommit mode
+     * @param statement - prepared review insert
+     * @param batch
+     * @throws SQLException
+     */
+    private void writeBatch(Connection connection, PreparedStatement statement, List<Review> batch)
+            throws SQLException {
+        int count = 0;
+
+        for (Review review : batch) {
+            String username = review.getUsername();
+            if (username == null || username.equals("")) {
+                continue;
+            }
+
+            // hotelid, username, rating, recommend, title, review, date
+            statement.setString(1, review.getHotelId());
+            statement.setString(2, username);
+            statement.setInt(3, review.getRating());
+            statement.setInt(4, (review.getIsRecom()) ? 1 : 0);
+            statement.setString(5, review.getReviewTitle());
+            statement.setString(6, review.getReview());
+            statement.setTimestamp(7, new Timestamp(review.getTime()));
+            statement.addBatch();
+
+            this.usernames.add(username);
+            count++;
+        }
+
+        if (count > 0) {
+            statement.executeBatch();
+            connection.commit();
+            this.rows.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SchemaMigrator to bring the database schema up to date.
+ * Migrations are registered in version order and the highest applied version is recorded in
+ * hotelapp_schemaversion. On startup every migration above that version is applied and recorded.
+ * MySQL commits DDL implicitly, so every step must be safe to run again on a schema that already has its
+ * change, in case a previous run stopped in the middle of a migration.
+ *
+ * @author BrianSung
+ */
+public class SchemaMigrator {
+    private final List<Migration> migrations;
+
+    /**
+     * Constructor.
+     */
+    public SchemaMigrator() {
+        this.migrations = new ArrayList<>();
+    }
+
+    /**
+     * Register a migration. Versions must be registered in increasing order.
+     *
+     * @param version
+     * @param description
+     * @param steps - applied in order
+     * @return SchemaMigrator - this migrator
+     */
+    public SchemaMigrator add(int version, String description, Step... steps) {
+        if (!this.migrations.isEmpty() && this.migrations.get(this.migrations.size() - 1).version >= version) {
+            throw new IllegalArgumentException("Migration " + version + " registered out of order.");
+        }
+
+        this.migrations.add(new Migration(version, description, steps));
+
+        return this;
+    }
+
+    /**
+     * Apply every migration above the recorded schema version.
+     *
+     * @param connection - active database connection
+     * @return int - number of migrations applied
+     * @throws SQLException
+     */
+    public int migrate(Connection connection) throws SQLException {
+        int applied = 0;
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(MySqlQuery.CREATE_SCHEMAVERSION_TABLE_SQL);
+        }
+
+        int current = getVersion(connection);
+        for (Migration migration : this.migrations) {
+            if (migration.version <= current) {
+                continue;
+            }
+
+            System.out.println("Applying migration " + migration.version + ": " + migration.description + "...");
+            for (Step step : migration.steps) {
+                step.apply(connection);
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.INSERT_SCHEMAVERSION_SQL)) {
+                statement.setInt(1, migration.version);
+                statement.setString(2, migration.description);
+                statement.executeUpdate();
+            }
+            applied++;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Return the highest applied schema version, or 0 for a database without migrations.
+     *
+     * @param connection - active database connection
+     * @return int - schema version
+     * @throws SQLException
+     */
+    public static int getVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            ResultSet result = statement.executeQuery(MySqlQuery.SCHEMAVERSION_SQL);
+
+            return result.next() ? result.getInt("version") : 0;
+        }
+    }
+
+    /**
+     * Return true if a table exists in the current database.
+     *
+     * @param connection - active database connection
+     * @param table
+     * @return boolean
+     * @throws SQLException
+     */
+    public static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.TABLE_EXISTS_SQL)) {
+            statement.setString(1, table);
+
+            return statement.executeQuery().next();
+        }
+    }
+
+    /**
+     * Return a step that executes one SQL statement. The statement itself must be idempotent.
+     *
+     * @param sql
+     * @return Step
+     */
+    public static Step sql(String sql) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(sql);
+            }
+        };
+    }
+
+    /**
+     * Return a step that creates an index unless an index of that name already exists on the table.
+     *
+     * @param table
+     * @param index - index name
+     * @param columns - comma separated column list
+     * @return Step
+     */
+    public static Step addIndex(String table, String index, String columns) {
+        return connection -> {
+            if (indexExists(connection, table, index)) {
+                return;
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE INDEX " + index + " ON " + table + " (" + columns + ");");
+            }
+        };
+    }
+
+    /**
+     * Return a step that adds a column unless a column of that name already exists on the table.
+     *
+     * @param table
+     * @param column - column name
+     * @param definition - column type and attributes
+     * @return Step
+     */
+    public static Step addColumn(String table, String column, String definition) {
+        return connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.COLUMN_EXISTS_SQL)) {
+                statement.setString(1, table);
+                statement.setString(2, column);
+
+                if (statement.executeQuery().next()) {
+                    return;
+                }
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition + ";");
+            }
+        };
+    }
+
+    /**
+     * Return a step that drops an index if it exists on the table.
+     *
+     * @param table
+     * @param index - index name
+     * @return Step
+     */
+    public static Step dropIndex(String table, String index) {
+        return connection -> {
+            if (indexExists(connection, table, index)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DROP INDEX " + index + " ON " + table + ";");
+                }
+            }
+        };
+    }
+
+    /**
+     * Return a step that adds a unique index to a table that may contain duplicates.
+     * The rows are copied into a new table with the unique index, grouped by the index columns, and the new table
+     * replaces the old one in a single rename. The other indexes of the table are kept.
+     *
+     * @param table
+     * @param index - index name
+     * @param columns - comma separated column list of the unique index
+     * @param select - select list that merges a group of duplicate rows into one, in table column order
+     * @return Step
+     */
+    public static Step addUniqueIndex(String table, String index, String columns, String select) {
+        return connection -> {
+            if (indexExists(connection, table, index)) {
+                return;
+            }
+
+            String copy = table + "_dedup";
+            String old = table + "_old";
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DROP TABLE IF EXISTS " + copy + ", " + old + ";");
+                statement.executeUpdate("CREATE TABLE " + copy + " LIKE " + table + ";");
+                statement.executeUpdate("CREATE UNIQUE INDEX " + index + " ON " + copy + " (" + columns + ");");
+                statement.executeUpdate("INSERT INTO " + copy + " SELECT " + select +
+                        " FROM " + table + " GROUP BY " + columns + ";");
+                statement.executeUpdate("RENAME TABLE " + table + " TO " + old + ", " + copy + " TO " + table + ";");
+                statement.executeUpdate("DROP TABLE " + old + ";");
+            }
+        };
+    }
+
+    /**
+     * Return true if an index of that name exists on the table.
+     *
+     * @param connection - active database connection
+     * @param table
+     * @param index - index name
+     * @return boolean
+     * @throws SQLException
+     */
+    private static boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(MySqlQuery.INDEX_EXISTS_SQL)) {
+            statement.setString(1, table);
+            statement.setString(2, index);
+
+            return statement.executeQuery().next();
+        }
+    }
+
+    /**
+     * One step of a migration.
+     */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * A numbered list of steps.
+     */
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final Step[] steps;
+
+        private Migration(int version, String description, Step[] steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = steps;
+        }
+    }
+}
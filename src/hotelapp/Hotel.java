@@ -1,6 +1,10 @@
 package hotelapp;
 
+import java.util.Collection;
+
 /** A class that represents a hotel. Stores hotelId, name, address, and averageRating.
+ * Also keeps running statistics of the reviews added through HotelData: the number of reviews, the sum of their
+ * ratings, the number of reviews per rating 1-5 and the number of reviews that recommend the hotel.
  * Implements Comparable - the hotels are compared based on the hotel names. If the names are the same, hotels
  * are compared based on the hotelId.
  */
@@ -8,7 +12,11 @@ public class Hotel implements Comparable<Hotel>{
     private String hotelId;
     private String hotelName;
     private Address hotelAddress;
-    private double averageRating;
+    private volatile double averageRating;
+    private int reviewCount;
+    private long ratingSum;
+    private final int[] ratingCounts = new int[(int)Review.MAXREVIEW];
+    private int recommendCount;
 
     /**
      * Constructor
@@ -36,6 +44,24 @@ public class Hotel implements Comparable<Hotel>{
         this.averageRating = 0;
     }
 
+    /**
+     * Copy constructor, copies the average rating and the review statistics of the hotel.
+     * @param hotel - the hotel to copy
+     */
+    Hotel(Hotel hotel) {
+        this.hotelId = hotel.hotelId;
+        this.hotelName = hotel.hotelName;
+        this.hotelAddress = hotel.hotelAddress;
+        this.averageRating = hotel.averageRating;
+
+        synchronized (hotel) {
+            this.reviewCount = hotel.reviewCount;
+            this.ratingSum = hotel.ratingSum;
+            System.arraycopy(hotel.ratingCounts, 0, this.ratingCounts, 0, this.ratingCounts.length);
+            this.recommendCount = hotel.recommendCount;
+        }
+    }
+
     /**
      * Set the averageRating of this hotel.
      * @param averageRating
@@ -44,6 +70,94 @@ public class Hotel implements Comparable<Hotel>{
         this.averageRating = averageRating;
     }
 
+    /**
+     * Return the averageRating of this hotel.
+     * @return double
+     */
+    public double getAverageRating() {
+        return this.averageRating;
+    }
+
+    /**
+     * Add a review to the review statistics of this hotel.
+     * @param review
+     */
+    synchronized void addReviewStats(Review review) {
+        this.reviewCount++;
+        this.ratingSum += review.getRating();
+        this.ratingCounts[review.getRating() - 1]++;
+        if (review.getIsRecom()) {
+            this.recommendCount++;
+        }
+    }
+
+    /**
+     * Replace the review statistics of this hotel with the statistics of the given reviews.
+     * The new statistics are computed first, so readers see either the old or the new statistics.
+     * @param reviews
+     */
+    void setReviewStats(Collection<Review> reviews) {
+        long sum = 0;
+        int[] counts = new int[this.ratingCounts.length];
+        int recommend = 0;
+
+        for (Review review : reviews) {
+            sum += review.getRating();
+            counts[review.getRating() - 1]++;
+            if (review.getIsRecom()) {
+                recommend++;
+            }
+        }
+
+        synchronized (this) {
+            this.reviewCount = reviews.size();
+            this.ratingSum = sum;
+            System.arraycopy(counts, 0, this.ratingCounts, 0, counts.length);
+            this.recommendCount = recommend;
+        }
+    }
+
+    /**
+     * Return the number of reviews of this hotel.
+     * @return int
+     */
+    public synchronized int getReviewCount() {
+        return this.reviewCount;
+    }
+
+    /**
+     * Return the average rating of the reviews of this hotel, 0 if there are no reviews.
+     * Unlike getAverageRating, always up to date.
+     * @return double
+     */
+    public synchronized double getRating() {
+        return (this.reviewCount == 0) ? 0 : (double)this.ratingSum / (double)this.reviewCount;
+    }
+
+    /**
+     * Return the number of reviews per rating, index 0 for rating 1 to index 4 for rating 5.
+     * @return int[]
+     */
+    public synchronized int[] getRatingHistogram() {
+        return this.ratingCounts.clone();
+    }
+
+    /**
+     * Return the number of reviews that recommend this hotel.
+     * @return int
+     */
+    public synchronized int getRecommendCount() {
+        return this.recommendCount;
+    }
+
+    /**
+     * Return the share of reviews that recommend this hotel, 0 if there are no reviews.
+     * @return double
+     */
+    public synchronized double getRecommendRatio() {
+        return (this.reviewCount == 0) ? 0 : (double)this.recommendCount / (double)this.reviewCount;
+    }
+
     /**
      * Return the hotel id of this hotel.
      * @return String
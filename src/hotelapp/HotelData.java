@@ -13,12 +13,13 @@ import java.util.*;
  * given hotel id are sorted by date from most recent to oldest;
  * if the dates are the same, the reviews are sorted by user nickname,
  * and the user nicknames are the same, by the reviewId.
+ * The Hotel of each hotel id keeps running statistics of its reviews, so ratings are read without iterating them.
  *
  */
 public class HotelData {
 
     private Map<String, Hotel> hotelMap;
-    private Map<String, TreeSet> reviewMap;
+    private Map<String, Set<Review>> reviewMap;
 
     /**
      * Default constructor.
@@ -30,7 +31,7 @@ public class HotelData {
 
     /**
      * Create a Hotel given the parameters, and add it to the appropriate data
-     * structure.
+     * structure. Creates the empty review set of the hotel, so adding reviews does not change the review map.
      *
      * @param hotelId
      *            - the id of the hotel
@@ -50,6 +51,7 @@ public class HotelData {
         Address address = new Address(city, state, streetAddress, lat, lon);
         Hotel newHotel = new Hotel(hotelId, hotelName, address);
         hotelMap.put(hotelId, newHotel);
+        reviewMap.putIfAbsent(hotelId, new TreeSet<>());
     }
 
     /**
@@ -79,24 +81,17 @@ public class HotelData {
     public boolean addReview(String hotelId, String reviewId, int rating, String reviewTitle,
                              String review, boolean isRecom, String date, String username){
 
-        if (!hotelMap.containsKey(hotelId)) {
+        if (!hasHotel(hotelId)) {
             System.out.println("Exception while running the addReview: Invalid hotelId.");
             return false;
         }
         else {
             try {
                 Review newReview = new Review(hotelId, reviewId, rating, reviewTitle, review, isRecom, date, username);
-
-                if (reviewMap.containsKey(hotelId)) {
-                    reviewMap.get(hotelId).add(newReview);
-                    return true;
-                }
-                else {
-                    Set<Review> newReviewSet = new TreeSet<>();
-                    newReviewSet.add(newReview);
-                    reviewMap.put(hotelId, (TreeSet)newReviewSet);
-                    return true;
+                if (reviewMap.computeIfAbsent(hotelId, key -> new TreeSet<>()).add(newReview)) {
+                    addReviewStats(hotelId, newReview);
                 }
+                return true;
 
             } catch (java.text.ParseException e) {
                 System.out.println("Exception while running the addReview: " + e);
@@ -108,6 +103,16 @@ public class HotelData {
         }
     }
 
+    /**
+     * Return true if reviews of the hotel can be added.
+     *
+     * @param hotelId
+     * @return boolean
+     */
+    protected boolean hasHotel(String hotelId) {
+        return hotelMap.containsKey(hotelId);
+    }
+
     /**
      * Returns a string representing information about the hotel with the given
      * id, including all the reviews for this hotel separated by --------------------
@@ -165,27 +170,30 @@ public class HotelData {
     }
 
     /**
-     * Return the average rating for the given hotelId.
+     * Return the average rating for the given hotelId, from the review statistics of the hotel.
      *
      * @param hotelId-
      *            the id of the hotel
      * @return average rating or 0 if no ratings for the hotel
      */
     public double getRating(String hotelId) {
-        double rating = 0; //return 0 when there is no key hotelId
+        Hotel hotel = hotelMap.get(hotelId);
 
-        if (reviewMap.get(hotelId) != null) {
-            int sum = 0;
-            Set<Review> reviews = reviewMap.get(hotelId);
+        return (hotel == null) ? 0 : hotel.getRating(); //return 0 when there is no key hotelId
+    }
 
-            for (Review perReview : reviews) {
-                sum += perReview.getRating();
-            }
+    /**
+     * Add a review that has been added to the reviews of a hotel to the review statistics of the hotel.
+     *
+     * @param hotelId
+     * @param review
+     */
+    private void addReviewStats(String hotelId, Review review) {
+        Hotel hotel = hotelMap.get(hotelId);
 
-            rating = (double)sum / (double)reviews.size();
+        if (hotel != null) {
+            hotel.addReviewStats(review);
         }
-
-        return rating;
     }
 
     /**
@@ -231,16 +239,108 @@ public class HotelData {
      *            - local hotel data.
      */
     public void mergeReviewMapAndSetRating(HotelData data) {
-        List<String> keys = this.getHotels();
+        for (String key: hotelMap.keySet()) {
+            mergeReviews(key, data);
+        }
+
+        setRatings();
+    }
+
+    /**
+     * Add the reviews of a hotel in local hotel data to the reviews of the hotel.
+     * Does not set the average rating.
+     *
+     * @param hotelId
+     * @param data
+     *            - local hotel data.
+     */
+    public void mergeReviews(String hotelId, HotelData data) {
+        Set<Review> reviews = data.reviewMap.get(hotelId);
+
+        if (reviews != null && hotelMap.containsKey(hotelId)) {
+            Set<Review> hotelReviews = reviewMap.computeIfAbsent(hotelId, key -> new TreeSet<>());
+
+            for (Review review : reviews) {
+                if (hotelReviews.add(review)) {
+                    addReviewStats(hotelId, review);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the average rating of every hotel from its reviews.
+     */
+    public void setRatings() {
+        for (Map.Entry<String, Hotel> entry : hotelMap.entrySet()) {
+            entry.getValue().setAverageRating(getRating(entry.getKey()));
+        }
+    }
+
+    /**
+     * Replace the reviews of a hotel and set its average rating from them.
+     *
+     * @param hotelId
+     * @param reviews - the new reviews, empty to remove all reviews of the hotel
+     * @return true if successful, false if there is no such hotel
+     */
+    public boolean setHotelReviews(String hotelId, Collection<Review> reviews) {
+        if (!hotelMap.containsKey(hotelId)) {
+            return false;
+        }
+
+        Set<Review> hotelReviews = new TreeSet<>(reviews);
+        Hotel hotel = hotelMap.get(hotelId);
 
-        for (String key: keys) {
-            if (data.reviewMap.get(key) != null) {
-                this.reviewMap.put(key, data.reviewMap.get(key));
+        reviewMap.put(hotelId, hotelReviews);
+        hotel.setReviewStats(hotelReviews);
+        hotelMap.get(hotelId).setAverageRating(getRating(hotelId));
+
+        return true;
+    }
 
-                //set averageRating
-                this.hotelMap.get(key).setAverageRating(getRating(key));
+    /**
+     * Return a copy of this hotel data that is never changed, for readers that do not take a lock.
+     * The maps and review sets of the copy are unmodifiable, and its hotels are copies with their rating and
+     * review statistics, so later writes to this hotel data do not reach the copy. Hotels and review sets that
+     * did not change are shared with the previous copy, so only the changed hotels are copied.
+     *
+     * @param previous
+     *            - the last copy, or null to copy everything
+     * @param changed
+     *            - ids of the hotels that were added, or whose reviews or rating changed since the previous copy
+     * @return HotelData
+     */
+    HotelData snapshot(HotelData previous, Set<String> changed) {
+        if (previous != null && changed.isEmpty()) {
+            return previous;
+        }
+
+        HotelData copy = new HotelData();
+        Map<String, Hotel> hotels = (previous == null) ? new TreeMap<>() : new TreeMap<>(previous.hotelMap);
+        Map<String, Set<Review>> reviews = (previous == null) ? new TreeMap<>() : new TreeMap<>(previous.reviewMap);
+
+        for (String hotelId : (previous == null) ? hotelMap.keySet() : changed) {
+            Hotel hotel = hotelMap.get(hotelId);
+            if (hotel == null) {
+                hotels.remove(hotelId);
+            }
+            else {
+                hotels.put(hotelId, new Hotel(hotel));
+            }
+
+            Set<Review> hotelReviews = reviewMap.get(hotelId);
+            if (hotelReviews == null) {
+                reviews.remove(hotelId);
+            }
+            else {
+                reviews.put(hotelId, Collections.unmodifiableSet(new TreeSet<>(hotelReviews)));
             }
         }
+        copy.hotelMap = Collections.unmodifiableMap(hotels);
+        copy.reviewMap = Collections.unmodifiableMap(reviews);
+
+        return copy;
     }
 
     /**
@@ -260,7 +360,7 @@ public class HotelData {
     }
 
     /**
-     * Return reviews of hotel.
+     * Return reviews of hotel, empty if the hotel has no reviews, null if there is no such hotel.
      * @return Set
      */
     public Set<Review> getHotelReviews(String hotelId) {
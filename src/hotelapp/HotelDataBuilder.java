@@ -11,14 +11,24 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
-/** Class HotelDataBuilder. Loads hotel info from input files to ThreadSafeHotelData (using multithreading). */
+/** Class HotelDataBuilder. Loads hotel info from input files to ThreadSafeHotelData (using multithreading).
+ *  Reviews are either added to the ThreadSafeHotelData by the loader threads, or, with local loading, collected
+ *  by each loader thread in its own HotelData without any locking and merged when all files have been parsed.
+ *  Hotel ids, cities, states and usernames are shared through a StringPool, as they repeat across many records.
+ */
 public class HotelDataBuilder extends HotelData {
 	private ThreadSafeHotelData hdata; // the "big" ThreadSafeHotelData that will contain all hotel and reviews info
 	private ExecutorService exec;
+	private ConcurrentLinkedQueue<HotelData> partials; // local hotel data of the loader threads, null if not used
+	private ThreadLocal<HotelData> partial;
+	private StringPool pool;
 
 	/** Constructor for class HotelDataBuilder.
 	 * @param data
@@ -26,6 +36,7 @@ public class HotelDataBuilder extends HotelData {
 	public HotelDataBuilder(ThreadSafeHotelData data) {
 		this.hdata = data;
 		this.exec = Executors.newFixedThreadPool(1);
+		this.pool = new StringPool();
 	}
 
 	/** Constructor for class HotelDataBuilder that takes ThreadSafeHotelData and
@@ -36,11 +47,31 @@ public class HotelDataBuilder extends HotelData {
 	public HotelDataBuilder(ThreadSafeHotelData data, int numThreads) {
 		this.hdata = data;
 		this.exec = Executors.newFixedThreadPool(numThreads);
+		this.pool = new StringPool();
+	}
+
+	/** Constructor for class HotelDataBuilder that takes ThreadSafeHotelData, the number of threads to create,
+	 * and whether each thread loads reviews into its own HotelData, to be merged after all reviews are loaded.
+	 * @param data
+	 * @param numThreads
+	 * @param local
+	 */
+	public HotelDataBuilder(ThreadSafeHotelData data, int numThreads, boolean local) {
+		this(data, numThreads);
+
+		if (local) {
+			this.partials = new ConcurrentLinkedQueue<>();
+			this.partial = ThreadLocal.withInitial(() -> {
+				HotelData partialData = new PartialHotelData();
+				partials.add(partialData);
+				return partialData;
+			});
+		}
 	}
 
 	/**
 	 * Read the json file with information about the hotels and load it into the
-	 * appropriate data structure(s).
+	 * appropriate data structure(s). Publishes the hotels once the file has been read.
 	 * @param jsonFilename
 	 */
 	public void loadHotelInfo(String jsonFilename) {
@@ -52,8 +83,8 @@ public class HotelDataBuilder extends HotelData {
 			for (JSONObject res : (Iterable<JSONObject>) arr) {
 				JSONObject ll = (JSONObject) res.get("ll"); //ll is another json object
 
-				hdata.addHotel(res.get("id").toString(), res.get("f").toString()
-						, res.get("ci").toString(), res.get("pr").toString(), res.get("ad").toString()
+				hdata.addHotel(pool.get(res.get("id").toString()), res.get("f").toString()
+						, pool.get(res.get("ci").toString()), pool.get(res.get("pr").toString()), res.get("ad").toString()
 						, Double.parseDouble(ll.get("lat").toString()), Double.parseDouble(ll.get("lng").toString()));
 			}
 		}
@@ -66,6 +97,7 @@ public class HotelDataBuilder extends HotelData {
 		catch (IOException e) {
 			System.out.println("Exception while running the loadHotelInfo: General IO Exception in readJSON");
 		}
+		hdata.publish();
 	}
 
 	/** Loads reviews from json files. Recursively processes subfolders.
@@ -98,6 +130,48 @@ public class HotelDataBuilder extends HotelData {
 		}
 	}
 
+	/** Waits until all reviews submitted by loadReviews have been loaded, then publishes them.
+	 * 	With local loading, merges the reviews of the loader threads first.
+	 * 	Shutdown the Executor, so no more reviews can be loaded afterwards.
+	 */
+	public void awaitReviews() {
+		exec.shutdown();
+
+		try {
+			while (!exec.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Still loading reviews...");
+			}
+		} catch (InterruptedException e) {
+			System.out.println("Exception while running the awaitReviews: " + e);
+			Thread.currentThread().interrupt();
+		}
+		mergePartials();
+		hdata.publish();
+		System.out.println(pool);
+	}
+
+	/** Return the pool of the hotel ids, cities, states and usernames loaded by this builder.
+	 * @return StringPool
+	 */
+	public StringPool getStringPool() {
+		return pool;
+	}
+
+	/** Merges the local HotelData of the loader threads into hdata, hotel by hotel in parallel,
+	 * 	then sets the average rating of all hotels in one pass.
+	 * 	Does nothing without local loading.
+	 */
+	private void mergePartials() {
+		if (partials == null || partials.isEmpty()) {
+			return;
+		}
+
+		List<HotelData> loaded = new ArrayList<>(partials);
+		partials.clear();
+		hdata.getHotels().parallelStream().forEach(hotelId -> hdata.mergeReviews(hotelId, loaded));
+		hdata.setRatings();
+	}
+
 	/** Prints all hotel info to the file.
 	 * 	Calls hdata's printToFile method.
 	 * 	Shutdown the Executor after we load all the reviews.
@@ -107,6 +181,8 @@ public class HotelDataBuilder extends HotelData {
 
 		try {
 			exec.awaitTermination(1, TimeUnit.MINUTES);
+			mergePartials();
+			hdata.publish();
 			hdata.printToFile(filename);
 		} catch (InterruptedException e) {
 			System.out.println("Exception while running the printToFile: " + e);
@@ -114,6 +190,16 @@ public class HotelDataBuilder extends HotelData {
 	}
 
 
+	/**
+	 * Local HotelData of one loader thread. Takes reviews of the hotels of hdata, without holding the hotels.
+	 */
+	private class PartialHotelData extends HotelData {
+		@Override
+		protected boolean hasHotel(String hotelId) {
+			return hdata.getHotel(hotelId) != null;
+		}
+	}
+
 	/**
 	 * Inner class that implements Runnable for ExecutorService to execute.
 	 *
@@ -135,6 +221,7 @@ public class HotelDataBuilder extends HotelData {
 		 */
 		public void run() {
 			JSONParser parser = new JSONParser();
+			HotelData target = (partial == null) ? hdata : partial.get();
 
 			try {
 				JSONObject obj = (JSONObject)parser.parse(new FileReader(jsonFilename));
@@ -149,12 +236,12 @@ public class HotelDataBuilder extends HotelData {
 					String reviewTitle = review.get("title").toString().replaceAll("(\\r|\\n|)\\n", " ");
 					String reviewText = review.get("reviewText").toString().replaceAll("(\\r|\\n|)\\n", " ");
 
-					hdata.addReview(review.get("hotelId").toString(), review.get("reviewId").toString()			//String hotelId, String reviewId
+					target.addReview(pool.get(review.get("hotelId").toString()), review.get("reviewId").toString()	//String hotelId, String reviewId
 							, Integer.parseInt(review.get("ratingOverall").toString())							//int rating
 							, reviewTitle, reviewText															//String reviewTitle, String review
 							, (!review.get("isRecommended").toString().toUpperCase().equals("NO"))				//boolean isRecom
 							, review.get("reviewSubmissionTime").toString()										//String date
-							, review.get("userNickname").toString());											//String username
+							, pool.get(review.get("userNickname").toString()));								//String username
 
 				}
 			}
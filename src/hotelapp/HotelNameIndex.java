@@ -0,0 +1,167 @@
+package hotelapp;
+
+import concurrent.ReentrantReadWriteLock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Class HotelNameIndex. A trigram index over hotel names for case-insensitive substring search.
+ * Every lower-case three character sequence of a name maps to the ids of the hotels whose name contains it.
+ * A search takes the smallest hotel set among the trigrams of the search term and checks only those names for
+ * the whole term. Terms shorter than three characters are checked against every name.
+ * Thread-safe, uses ReentrantReadWriteLock. Searches usually do not take the lock, see search.
+ */
+public class HotelNameIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, Set<String>> trigrams;
+    private final Map<String, String> names;
+    private final ReentrantReadWriteLock lock;
+
+    /**
+     * Default constructor.
+     */
+    public HotelNameIndex() {
+        this.trigrams = new HashMap<>();
+        this.names = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Add a hotel to the index, or replace its name if it is already indexed.
+     *
+     * @param hotelId
+     * @param hotelName
+     */
+    public void add(String hotelId, String hotelName) {
+        String name = hotelName.toLowerCase(Locale.ROOT);
+        lock.lockWrite();
+
+        try {
+            String old = names.put(hotelId, name);
+            if (old != null) {
+                for (String gram : grams(old)) {
+                    Set<String> ids = trigrams.get(gram);
+                    ids.remove(hotelId);
+                    if (ids.isEmpty()) {
+                        trigrams.remove(gram);
+                    }
+                }
+            }
+
+            for (String gram : grams(name)) {
+                trigrams.computeIfAbsent(gram, key -> new HashSet<>()).add(hotelId);
+            }
+        }
+        finally {
+            lock.unlockWrite();
+        }
+    }
+
+    /**
+     * Return the ids of all hotels whose name contains the term, ignoring case.
+     * Searches optimistically without the lock first, and again under the read lock if a hotel was added
+     * during the search.
+     *
+     * @param term
+     * @return List - sorted hotel ids
+     */
+    public List<String> search(String term) {
+        String needle = term.toLowerCase(Locale.ROOT);
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0) {
+            try {
+                List<String> result = find(needle);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            catch (RuntimeException e) {
+                // the maps changed during the search, search again under the lock
+            }
+        }
+
+        lock.lockRead();
+
+        try {
+            return find(needle);
+        }
+        finally {
+            lock.unlockRead();
+        }
+    }
+
+    /**
+     * Return the ids of all hotels whose name contains the lower-case term.
+     *
+     * @param needle
+     * @return List - sorted hotel ids
+     */
+    private List<String> find(String needle) {
+        Set<String> result = new TreeSet<>();
+        Set<String> candidates = names.keySet();
+
+        if (needle.length() >= GRAM) {
+            List<Set<String>> sets = new ArrayList<>();
+            for (String gram : grams(needle)) {
+                Set<String> ids = trigrams.get(gram);
+                if (ids == null) {
+                    return Collections.emptyList();
+                }
+                sets.add(ids);
+            }
+
+            sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            candidates = sets.get(0);
+        }
+
+        for (String id : candidates) {
+            if (names.get(id).contains(needle)) {
+                result.add(id);
+            }
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Return the number of indexed hotels.
+     *
+     * @return int
+     */
+    public int size() {
+        lock.lockRead();
+
+        try {
+            return names.size();
+        }
+        finally {
+            lock.unlockRead();
+        }
+    }
+
+    /**
+     * Return the distinct trigrams of a lower-case string.
+     *
+     * @param text
+     * @return Set
+     */
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+
+        return grams;
+    }
+}
@@ -1,14 +1,20 @@
 package hotelapp;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.Date;
 
 /** The class stores information about one hotel review.
  *  Stores the id of the review, the id of the corresponding hotel, the rating,
  *  the title of the review, the text of the review, the date when the review was posted in
  *  the following format: yyyy-MM-ddThh:mm:ss
+ *  The date is kept as milliseconds since the epoch, parsed with formatters shared by all reviews.
  *  Also stores the nickname of the user who submitted this review,
  *  and whether the user recommends the hotel to others or not.
  *  Implements Comparable - reviews should be compared based on the date
@@ -19,31 +25,38 @@ import java.util.Date;
  */
 public class Review implements Comparable<Review> {
 
-    public DateFormat format; // the date format
     public static final double MINREVIEW = 1;
     public static final double MAXREVIEW = 5;
 
+    // json date, e.g. 2016-06-29T17:50:37Z, anything after the seconds is ignored
+    private static final DateTimeFormatter JSON_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss");
+    // database date, e.g. 2016-06-29 17:50:37.0
+    private static final DateTimeFormatter DATABASE_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
     private String reviewId;
     private String hotelId;
     private int rating;
     private String reviewTitle;
     private String review;
     private boolean isRecom;
-    private Date date;
+    private long date; // milliseconds since the epoch
     private String username;
 
     /**
      * Default constructor.
      */
     public Review() {
-        this.format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         this.hotelId = null;
         this.reviewId = null;
         this.rating = 0;
         this.reviewTitle = null;
         this.review = null;
         this.isRecom = true;
-        this.date = null;
+        this.date = 0;
         this.username = null;
     }
 
@@ -57,14 +70,13 @@ public class Review implements Comparable<Review> {
      * By default, the hotel is recommended.
      */
     public Review(String hotelId, String reviewId) {
-        this.format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         this.hotelId = hotelId;
         this.reviewId = reviewId;
         this.rating = 0;
         this.reviewTitle = null;
         this.review = null;
         this.isRecom = true;
-        this.date = null;
+        this.date = 0;
         this.username = null;
     }
 
@@ -84,7 +96,7 @@ public class Review implements Comparable<Review> {
      * @param isRecom
      *            - boolean, whether the user recommends it or not
      * @param date
-     *            - date of the review in the format yyyy-MM-ddThh:mm:ss
+     *            - date of the review in the format yyyy-MM-ddThh:mm:ss, or yyyy-MM-dd hh:mm:ss.S from the database
      * @param username
      *            - the nickname of the user writing the review. If empty, save it as  "Anonymous"
      * @throws ParseException
@@ -99,21 +111,35 @@ public class Review implements Comparable<Review> {
             throw new InvalidRatingException("The value of the hotel rating is out of range");
         }
 
-        this.format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         this.hotelId = hotelId;
         this.reviewId = reviewId;
         this.rating = rating;
         this.reviewTitle = reviewTitle;
         this.review = review;
         this.isRecom = isRecom;
+        this.date = parseDate(date); //check if the format of incoming date is correct
+        this.username = username;
+    }
+
+    /**
+     * Return the milliseconds since the epoch of a date in the json or the database format, in the local time zone.
+     * The format is chosen by the character between the day and the hour.
+     *
+     * @param date
+     * @return long
+     * @throws ParseException
+     *             - If date is not valid.
+     */
+    private static long parseDate(String date) throws ParseException {
+        DateTimeFormatter formatter = (date.length() > 10 && date.charAt(10) == ' ') ? DATABASE_FORMAT : JSON_FORMAT;
+
         try {
-            this.date = format.parse(date); //check if the format of incoming date is correct
+            LocalDateTime time = LocalDateTime.from(formatter.parse(date, new ParsePosition(0)));
+            return time.atZone(ZONE).toInstant().toEpochMilli();
         }
-        catch (ParseException e) {
-            this.format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S");
-            this.date = format.parse(date); // from database date format
+        catch (DateTimeException e) {
+            throw new ParseException("Unparseable date: \"" + date + "\"", 0);
         }
-        this.username = username;
     }
 
     /**
@@ -161,6 +187,14 @@ public class Review implements Comparable<Review> {
      * @return Date
      */
     public Date getDate() {
+        return new Date(this.date);
+    }
+
+    /**
+     * Return the date of this review in milliseconds since the epoch.
+     * @return long
+     */
+    public long getTime() {
         return this.date;
     }
 
@@ -194,10 +228,10 @@ public class Review implements Comparable<Review> {
     @Override
     public int compareTo(Review other) {
         //date should be order descending so when compareTo returns a number smaller then 0 then sort first
-        if(this.date.compareTo(other.getDate()) < 0) {
+        if (this.date < other.date) {
             return 1;
         }
-        else if (this.date.compareTo(other.getDate()) > 0) {
+        else if (this.date > other.date) {
             return -1;
         }
         else {
@@ -242,7 +276,7 @@ public class Review implements Comparable<Review> {
         String name = ((this.username.equals("") || this.username.equals(null)) ? "Anonymous" : this.username);
         StringBuilder sb= new StringBuilder();
 
-        sb.append("Review by " + name + " on " + this.date.toString() + System.lineSeparator());
+        sb.append("Review by " + name + " on " + new Date(this.date).toString() + System.lineSeparator());
         sb.append("Rating: " + this.rating + System.lineSeparator());
         sb.append(this.reviewTitle + System.lineSeparator());
         sb.append(this.review + System.lineSeparator());
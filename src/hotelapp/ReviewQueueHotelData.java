@@ -0,0 +1,96 @@
+package hotelapp;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class ReviewQueueHotelData - extends class ThreadSafeHotelData.
+ * Keeps hotels like ThreadSafeHotelData, but hands every valid review to a bounded queue instead of storing it,
+ * so that a consumer can write reviews while the json files are still being parsed.
+ * Parser threads wait while the queue is full.
+ */
+public class ReviewQueueHotelData extends ThreadSafeHotelData {
+	private static final long OFFER_TIMEOUT = 100;
+
+	private final BlockingQueue<Review> queue;
+	private final Set<String> reviewIds;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor.
+	 * @param queue
+	 *            - queue that receives the parsed reviews
+	 */
+	public ReviewQueueHotelData(BlockingQueue<Review> queue) {
+		super();
+		this.queue = queue;
+		this.reviewIds = ConcurrentHashMap.newKeySet();
+		this.closed = false;
+	}
+
+	/**
+	 * Overrides addReview method from ThreadSafeHotelData class to put the review into the queue.
+	 * A review is rejected for the same reasons as in HotelData, or if a review with the same id has already been
+	 * queued for the hotel.
+	 *
+	 * @param hotelId
+	 *            - the id of the hotel reviewed
+	 * @param reviewId
+	 *            - the id of the review
+	 * @param rating
+	 *            - integer rating 1-5.
+	 * @param reviewTitle
+	 *            - the title of the review
+	 * @param review
+	 *            - text of the review
+	 * @param isRecom
+	 *            - whether the user recommends it or not
+	 * @param date
+	 *            - date of the review in the format yyyy-MM-ddThh:mm:ss, e.g. "2016-06-29T17:50:37"
+	 * @param username
+	 *            - the nickname of the user writing the review.
+	 * @return true if the review has been queued
+	 */
+	public boolean addReview(String hotelId, String reviewId, int rating, String reviewTitle, String review,
+			boolean isRecom, String date, String username) {
+		if (getHotel(hotelId) == null) {
+			System.out.println("Exception while running the addReview: Invalid hotelId.");
+			return false;
+		}
+
+		Review newReview;
+		try {
+			newReview = new Review(hotelId, reviewId, rating, reviewTitle, review, isRecom, date, username);
+		}
+		catch (java.text.ParseException | InvalidRatingException e) {
+			System.out.println("Exception while running the addReview: " + e);
+			return false;
+		}
+
+		if (!reviewIds.add(hotelId + "/" + reviewId)) {
+			return false;
+		}
+
+		try {
+			while (!closed) {
+				if (queue.offer(newReview, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Stop accepting reviews, so that parser threads waiting on a full queue give up.
+	 */
+	public void close() {
+		closed = true;
+	}
+}
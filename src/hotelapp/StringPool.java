@@ -0,0 +1,105 @@
+package hotelapp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class StringPool. Returns one shared instance for equal strings, so that values repeated in many records,
+ * like hotel ids, usernames, cities and states, are kept in memory only once.
+ * Counts the duplicates it has replaced and estimates the bytes they would have kept.
+ * Thread-safe.
+ */
+public class StringPool {
+    private static final int STRING_BYTES = 24; // header, hash, coder and array reference
+    private static final int ARRAY_BYTES = 16; // header and length
+
+    private final ConcurrentHashMap<String, String> strings;
+    private final AtomicLong duplicates;
+    private final AtomicLong savedBytes;
+
+    /**
+     * Default constructor.
+     */
+    public StringPool() {
+        this.strings = new ConcurrentHashMap<>();
+        this.duplicates = new AtomicLong();
+        this.savedBytes = new AtomicLong();
+    }
+
+    /**
+     * Return the pooled instance of a string, adding the string to the pool if it is new.
+     *
+     * @param value
+     * @return String - the shared instance, null if value is null
+     */
+    public String get(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String pooled = this.strings.putIfAbsent(value, value);
+        if (pooled == null) {
+            return value;
+        }
+
+        if (pooled != value) {
+            this.duplicates.incrementAndGet();
+            this.savedBytes.addAndGet(sizeOf(value));
+        }
+
+        return pooled;
+    }
+
+    /**
+     * Return the number of distinct strings in the pool.
+     * @return int
+     */
+    public int size() {
+        return this.strings.size();
+    }
+
+    /**
+     * Return the number of duplicate strings replaced by a pooled instance.
+     * @return long
+     */
+    public long getDuplicates() {
+        return this.duplicates.get();
+    }
+
+    /**
+     * Return the estimated bytes of the duplicate strings replaced by a pooled instance.
+     * @return long
+     */
+    public long getSavedBytes() {
+        return this.savedBytes.get();
+    }
+
+    /**
+     * Return a one line report of the strings shared by the pool.
+     * @return String
+     */
+    public String toString() {
+        return "Shared " + size() + " strings for " + getDuplicates() + " duplicates, saved about "
+                + getSavedBytes() / 1024 + " KB.";
+    }
+
+    /**
+     * Return the estimated heap size of a string with compressed references: the String object and its array,
+     * one byte per character if all characters are Latin-1, two otherwise, rounded up to 8 bytes.
+     *
+     * @param value
+     * @return long
+     */
+    private static long sizeOf(String value) {
+        int perChar = 1;
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                perChar = 2;
+                break;
+            }
+        }
+
+        return STRING_BYTES + ((ARRAY_BYTES + (long)value.length() * perChar + 7) & ~7L);
+    }
+}
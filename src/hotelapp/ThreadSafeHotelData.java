@@ -3,16 +3,31 @@ package hotelapp;
 import concurrent.ReentrantReadWriteLock;
 
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class ThreadSafeHotelData - extends class HotelData.
- * Thread-safe, uses ReentrantReadWriteLock to synchronize access to all data structures.
+ * Thread-safe. Writers change the data structures under the write lock of a ReentrantReadWriteLock.
+ * Reviews are the exception: addReview only takes the read lock, which keeps the set of hotels from changing,
+ * and a lock from a fixed set of stripes chosen by the hotel id, so reviews of different hotels are added in parallel.
+ * Readers do not lock: they read an unmodifiable snapshot of the data, with its own copies of the changed hotels,
+ * which a writer replaces through a single volatile reference when it calls publish(). Writes are therefore batched;
+ * they become visible to readers when they are published, not review by review. HotelDataBuilder publishes after
+ * the hotel file has been read and after awaitReviews, MemoryHotelRepository after each reload of a hotel's reviews.
  */
 public class ThreadSafeHotelData extends HotelData {
+	private static final int STRIPES = 64;
 
 	private ReentrantReadWriteLock lock = null;
+	private final ReentrantReadWriteLock[] stripes;
+	private volatile HotelData snapshot;
+
+	// hotels added, or whose reviews or rating changed since the last publish, cleared under the write lock
+	private final Set<String> changed;
 
 	/**
 	 * Default constructor.
@@ -20,10 +35,33 @@ public class ThreadSafeHotelData extends HotelData {
 	public ThreadSafeHotelData() {
 		super();
 		lock = new ReentrantReadWriteLock();
+		stripes = new ReentrantReadWriteLock[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantReadWriteLock();
+		}
+		changed = ConcurrentHashMap.newKeySet();
+		snapshot = snapshot(null, changed);
+	}
+
+	/**
+	 * Make the writes since the last call visible to readers: build the next snapshot and replace the current one.
+	 * Only the hotels and reviews of hotels that changed are copied.
+	 */
+	public void publish() {
+		lock.lockWrite();
+
+		try {
+			snapshot = snapshot(snapshot, changed);
+			changed.clear();
+		}
+		finally {
+			lock.unlockWrite();
+		}
 	}
 
 	/**
 	 * Overrides addHotel method from HotelData class to make it thread-safe; uses the lock.
+	 * The hotel is visible to readers after the next publish.
 	 * Create a Hotel given the parameters, and add it to the appropriate data
 	 * structure(s).
 	 * 
@@ -47,6 +85,7 @@ public class ThreadSafeHotelData extends HotelData {
 
 		try {
 			super.addHotel(hotelId, hotelName, city, state, streetAddress, lat, lon);
+			changed.add(hotelId);
 		}
 		finally {
 			lock.unlockWrite();
@@ -54,7 +93,9 @@ public class ThreadSafeHotelData extends HotelData {
 	}
 
 	/**
-	 * Overrides addReview method from HotelData class to make it thread-safe; uses the lock.
+	 * Overrides addReview method from HotelData class to make it thread-safe; uses the read lock and the stripe
+	 * of the hotel, so reviews of hotels in other stripes can be added at the same time.
+	 * The review is visible to readers after the next publish.
 	 *
 	 * @param hotelId
 	 *            - the id of the hotel reviewed
@@ -80,17 +121,24 @@ public class ThreadSafeHotelData extends HotelData {
 	 */
 	public boolean addReview(String hotelId, String reviewId, int rating, String reviewTitle, String review,
 			boolean isRecom, String date, String username) {
-		lock.lockWrite();
+		ReentrantReadWriteLock stripe = stripes[Math.floorMod(hotelId.hashCode(), STRIPES)];
+		lock.lockRead();
+		stripe.lockWrite();
 
 		try {
-			return super.addReview(hotelId, reviewId, rating, reviewTitle, review, isRecom, date, username);
+			if (super.addReview(hotelId, reviewId, rating, reviewTitle, review, isRecom, date, username)) {
+				changed.add(hotelId);
+				return true;
+			}
+			return false;
 		}
 		finally {
-			lock.unlockWrite();
+			stripe.unlockWrite();
+			lock.unlockRead();
 		}
 	}
 
-	/** Overrides toString method of class HotelData to make it thread-safe.
+	/** Overrides toString method of class HotelData to read the published snapshot.
 	 * Returns a string representing information about the hotel with the given
 	 * id, including all the reviews for this hotel separated by
 	 * -------------------- Format of the string:
@@ -107,18 +155,11 @@ public class ThreadSafeHotelData extends HotelData {
 	 * @return - output string.
 	 */
 	public String toString(String hotelId) {
-		lock.lockRead();
-
-		try {
-			return super.toString(hotelId);
-		}
-		finally {
-			lock.unlockRead();
-		}
+		return snapshot.toString(hotelId);
 	}
 
 	/**
-	 * Overrides the method printToFile of the parent class to make it thread-safe.
+	 * Overrides the method printToFile of the parent class to print the published snapshot.
 	 * Save the string representation of the hotel data to the file specified by
 	 * filename in the following format: an empty line A line of 20 asterisks
 	 * ******************** on the next line information for each hotel, printed
@@ -130,37 +171,24 @@ public class ThreadSafeHotelData extends HotelData {
 	 *            - Path specifying where to save the output.
 	 */
 	public void printToFile(Path filename) {
-		lock.lockRead();
-
-		try {
-			super.printToFile(filename);
-		}
-		finally {
-			lock.unlockRead();
-		}
+		snapshot.printToFile(filename);
 	}
 
 	/**
-	 * Overrides a method of the parent class to make it thread-safe.
+	 * Overrides a method of the parent class to read the published snapshot.
 	 * Return an alphabetized list of the ids of all hotels
 	 * 
 	 * @return List
 	 */
 	public List<String> getHotels() {
-		lock.lockRead();
-
-		try {
-			return super.getHotels();
-		}
-		finally {
-			lock.unlockRead();
-		}
+		return snapshot.getHotels();
 	}
 
 	/**
 	 * Overrides a method of the parent class to make it thread-safe.
 	 * To merge the local review maps into big review map.
 	 * To set the average rating of each hotel after done the review loading.
+	 * The reviews are visible to readers after the next publish.
 	 *
 	 * @param data
 	 *            - local hotel data.
@@ -170,6 +198,7 @@ public class ThreadSafeHotelData extends HotelData {
 
 		try {
 			super.mergeReviewMapAndSetRating(data);
+			changed.addAll(super.getHotels());
 		}
 		finally {
 			lock.unlockWrite();
@@ -178,33 +207,107 @@ public class ThreadSafeHotelData extends HotelData {
 
 	/**
 	 * Overrides a method of the parent class to make it thread-safe.
-	 * Return the details of hotel: name, address, city, state, latitude, longitude.
-	 * @return String[]
+	 * Add the reviews of a hotel in local hotel data to the reviews of the hotel.
+	 *
+	 * @param hotelId
+	 * @param data
+	 *            - local hotel data.
 	 */
-	public String[] getHotelDetail(String hotelId) {
+	public void mergeReviews(String hotelId, HotelData data) {
+		mergeReviews(hotelId, Collections.singletonList(data));
+	}
+
+	/**
+	 * Add the reviews of a hotel in the local hotel data of each loader to the reviews of the hotel.
+	 * Like addReview, uses the read lock and the stripe of the hotel, so different hotels can be merged at the
+	 * same time. Does not set the average rating; the reviews are visible to readers after the next publish.
+	 *
+	 * @param hotelId
+	 * @param partials
+	 *            - local hotel data, not changed while they are merged
+	 */
+	public void mergeReviews(String hotelId, Collection<? extends HotelData> partials) {
+		ReentrantReadWriteLock stripe = stripes[Math.floorMod(hotelId.hashCode(), STRIPES)];
 		lock.lockRead();
+		stripe.lockWrite();
 
 		try {
-			return super.getHotelDetail(hotelId);
+			for (HotelData partial : partials) {
+				super.mergeReviews(hotelId, partial);
+			}
+			changed.add(hotelId);
 		}
 		finally {
+			stripe.unlockWrite();
 			lock.unlockRead();
 		}
 	}
 
 	/**
 	 * Overrides a method of the parent class to make it thread-safe.
-	 * Return reviews of hotel.
-	 * @return Set
+	 * Set the average rating of every hotel from its reviews.
 	 */
-	public Set<Review> getHotelReviews(String hotelId) {
-		lock.lockRead();
+	public void setRatings() {
+		lock.lockWrite();
 
 		try {
-			return super.getHotelReviews(hotelId);
+			super.setRatings();
+			changed.addAll(super.getHotels());
 		}
 		finally {
-			lock.unlockRead();
+			lock.unlockWrite();
+		}
+	}
+
+	/**
+	 * Overrides a method of the parent class to make it thread-safe.
+	 * Replace the reviews of a hotel and set its average rating from them.
+	 * The reviews are visible to readers after the next publish.
+	 *
+	 * @param hotelId
+	 * @param reviews
+	 *            - the new reviews, empty to remove all reviews of the hotel
+	 * @return true if successful, false if there is no such hotel
+	 */
+	public boolean setHotelReviews(String hotelId, Collection<Review> reviews) {
+		lock.lockWrite();
+		try {
+			if (super.setHotelReviews(hotelId, reviews)) {
+				changed.add(hotelId);
+				return true;
+			}
+			return false;
+		}
+		finally {
+			lock.unlockWrite();
 		}
 	}
+
+	/**
+	 * Overrides a method of the parent class to read the published snapshot.
+	 * Return the details of hotel: name, address, city, state, latitude, longitude.
+	 * @return String[]
+	 */
+	public String[] getHotelDetail(String hotelId) {
+		return snapshot.getHotelDetail(hotelId);
+	}
+
+	/**
+	 * Overrides a method of the parent class to read the published snapshot.
+	 * Return hotel by id.
+	 * @return Hotel
+	 */
+	public Hotel getHotel(String hotelId) {
+		return snapshot.getHotel(hotelId);
+	}
+
+	/**
+	 * Overrides a method of the parent class to read the published snapshot.
+	 * Return reviews of hotel, an unmodifiable set that does not change after it has been returned.
+	 * @return Set
+	 */
+	public Set<Review> getHotelReviews(String hotelId) {
+		return snapshot.getHotelReviews(hotelId);
+	}
+
 }
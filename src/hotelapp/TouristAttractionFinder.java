@@ -1,6 +1,8 @@
 package hotelapp;
 
 import data.DatabaseHandler;
+import data.Expedia;
+import data.ReferenceDataCache;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
@@ -9,7 +11,6 @@ import org.json.simple.parser.ParseException;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -124,7 +125,7 @@ public class TouristAttractionFinder implements Iterator<TouristAttraction>{
      * @throws SQLException
      */
     private String getPhotoUrl(JSONArray photos) throws ParseException, IOException, SQLException {
-        String url = "https://i.imgur.com/9OueEQZ.png";
+        String url = Expedia.NO_PHOTO;
 
         if (photos != null) {
             JSONObject obj = (JSONObject) photos.get(0);
@@ -172,14 +173,13 @@ public class TouristAttractionFinder implements Iterator<TouristAttraction>{
         String key = dbhandler.getApiKey(hostname, type);
 
         if (get.equals("place")) {
-            ResultSet result = dbhandler.getHotel(hotelIdOrQuery);
-
-            if (result.next()) {
+            ReferenceDataCache.HotelInfo hotel = dbhandler.getHotelInfo(hotelIdOrQuery);
+            if (hotel != null) {
                 sb.append(PLACE_API_PATH);
                 sb.append("query=tourist%20attractions+in+");
-                sb.append(result.getString("city").replaceAll(" ", "%20"));
-                sb.append("&location=").append(result.getString("latitude"));
-                sb.append(",").append(result.getString("longitude"));
+                sb.append(hotel.getCity().replaceAll(" ", "%20"));
+                sb.append("&location=").append(hotel.getLatitude());
+                sb.append(",").append(hotel.getLongitude());
                 sb.append("&language=en");
                 sb.append("&radius=").append((int) (1609.344 * 3));
             }
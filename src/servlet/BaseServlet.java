@@ -6,6 +6,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -157,6 +159,8 @@ public class BaseServlet extends HttpServlet {
             ds.setElement(name + "id", "");
             ds.setElement(name + "ShowEntries", "5");
             ds.setElement(name + "Page", "1");
+            // reads of this user go to the primary right after the user's writes
+            ds.setElement("username", (String) session.getAttribute("username"));
 
             session.setAttribute(name, ds);
         }
@@ -333,6 +337,43 @@ public class BaseServlet extends HttpServlet {
         return types;
     }
 
+    /**
+     * Construct the html query of user's login information in MyPage. (Last login time, IP address)
+     *
+     * @param username
+     * @return String - Html query of login information
+     * @throws SQLException
+     */
+    protected String loginInformation(String username) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+
+        try (ResultSet result = dbhandler.getLogins(username)) {
+            int count = 0;
+            while (result.next()) {
+                count++;
+                if (count == 2) {
+                    sb.append("<div class=\"col-lg-6\">");
+                    sb.append("<i class=\"fa fa-clock-o\" aria-hidden=\"true\"></i> Last Login Time: ");
+                    sb.append(result.getTimestamp("date"));
+                    sb.append("</div>");
+                    sb.append("<div class=\"col-lg-6\">");
+                    sb.append("<i class=\"fa fa-compass\" aria-hidden=\"true\"></i> IP Address: ");
+                    sb.append(result.getString("ipaddress"));
+                    sb.append("</div>");
+                }
+            }
+
+            if (count < 2) {
+                sb.append("<div class=\"col-lg-12\">");
+                sb.append("<i class=\"fa fa-hand-spock-o\" aria-hidden=\"true\"></i> ");
+                sb.append("This is your first time to login! Huzzah!");
+                sb.append("</div>");
+            }
+        }
+
+        return sb.toString();
+    }
+
     /**
      * Use Velocity Engine to get html template.
      *
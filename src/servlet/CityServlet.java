@@ -4,8 +4,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 /**
  * CityServlet class.
@@ -25,20 +23,14 @@ public class CityServlet extends BaseServlet {
         PrintWriter out = response.getWriter();
 
         if (getUsername(request) != null) {
-            try (ResultSet result = dbhandler.getCitys()) {
-
-                sb.append("<select id=\"city\" class=\"form-control-sm\" onchange=\"showOnChange('hotel')\">");
-                sb.append("<option value=\"\">Select City</option>");
-                while (result.next()) {
-                    sb.append("<option value=\"" + result.getString("city") + "\">"
-                            + result.getString("city") + "</option>");
-                }
-                sb.append("</select>");
-
-                out.println(sb.toString());
-            } catch (SQLException e) {
-                System.out.println(e);
+            sb.append("<select id=\"city\" class=\"form-control-sm\" onchange=\"showOnChange('hotel')\">");
+            sb.append("<option value=\"\">Select City</option>");
+            for (String city : dbhandler.getCitys()) {
+                sb.append("<option value=\"" + city + "\">" + city + "</option>");
             }
+            sb.append("</select>");
+
+            out.println(sb.toString());
         }
     }
 }
@@ -2,6 +2,8 @@ package servlet;
 
 import data.DataSession;
 import data.Expedia;
+import data.HotelDetail;
+import data.HotelRepository;
 import hotelapp.TouristAttraction;
 import hotelapp.TouristAttractionFinder;
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -45,21 +47,24 @@ public class HotelDetailServlet extends BaseServlet {
                 if (type.equals(types.get(2))) {
                     sb.append(touristAttractionDetail(type, ds));
                 }
-                else {
-                    ResultSet result = dbhandler.getDetails(type, ds);
-                    if (result.next()) {
+                else if (type.equals(types.get(0))) {
+                    HotelRepository repository = dbhandler.getRepository();
+                    HotelDetail hotel = repository.getHotelDetail(ds.getElement(type + "id"), username);
+                    if (hotel != null) {
                         sb.append("<div class=\"card mb-4\">");
-
-                        if (type.equals(types.get(0))) {
-                            sb.append(head(type, result.getString("hotelname")
-                                    , request.getParameter("id"), username));
-                            sb.append(body(result, request.getParameter("id"), username));
-                        } else if (type.equals(types.get(1))) {
+                        sb.append(head(type, hotel, request.getParameter("id")));
+                        sb.append(body(hotel, request.getParameter("id")));
+                        sb.append("</div>");
+                    }
+                }
+                else {
+                    try (ResultSet result = dbhandler.getDetails(type, ds)) {
+                        if (result.next()) {
+                            sb.append("<div class=\"card mb-4\">");
                             sb.append(reviewHead(type, result));
                             sb.append(reviewBody(type, username, result));
+                            sb.append("</div>");
                         }
-
-                        sb.append("</div>");
                     }
                 }
 
@@ -75,21 +80,18 @@ public class HotelDetailServlet extends BaseServlet {
      * Construct html query for head of hotel detail card in both Hotels page and MyPage.
      *
      * @param type
-     * @param name
+     * @param hotel
      * @param hotelId
-     * @param username
      * @return String - Html query of hotel card head
-     * @throws SQLException
      */
-    private String head(String type, String name, String hotelId, String username) throws SQLException {
+    private String head(String type, HotelDetail hotel, String hotelId) {
         StringBuilder sb = new StringBuilder();
-        int status = dbhandler.getSaved(type, hotelId, username);
-        String saved = "<span class=\"fa fa-" + (status == 1 ? "heart" : "heart-o")
+        String saved = "<span class=\"fa fa-" + (hotel.isSaved() ? "heart" : "heart-o")
                 + " recommend clickable\" onclick=\"like('" + type + "', '" + hotelId + "')\"></span>";
 
         sb.append("<div class=\"card-header\">");
         sb.append("<span class=\"badge badge-primary\">" + type + "</span> ");
-        sb.append(name).append(saved);
+        sb.append(hotel.getHotelName()).append(saved);
         sb.append("</div>");
         return sb.toString();
     }
@@ -97,29 +99,26 @@ public class HotelDetailServlet extends BaseServlet {
     /**
      * Construct html query for body of hotel detail card in both Hotels page and MyPage.
      *
-     * @param result
+     * @param hotel
      * @param hotelId
-     * @param username
      * @return String - Html query of hotel card body
-     * @throws SQLException
      */
-    private String body(ResultSet result, String hotelId, String username) throws SQLException {
+    private String body(HotelDetail hotel, String hotelId) {
         StringBuilder sb = new StringBuilder();
         Expedia expedia = new Expedia();
         String expediaLink = expedia.getExpediaLink(hotelId);
-        ResultSet expediaInfo = dbhandler.getExpedia(hotelId);
-        expediaInfo.next();
-        double rating = dbhandler.getRating(hotelId);
-        int expediaStatus = dbhandler.getSaved("expedia", hotelId, username);
+        String phone = hotel.getPhone();
+        String photo = hotel.getPhoto();
+        double rating = hotel.getRating();
 
         sb.append("<div class=\"card-body\">");
         sb.append("<img class=\"card-img\" style=\"background-image: ");
-        sb.append("url('" + expediaInfo.getString("photo") + "');\" src=\"frontend/img/incognito.png\" alt=\"Image\">");
+        sb.append("url('" + photo + "');\" src=\"frontend/img/incognito.png\" alt=\"Image\">");
         sb.append("<p></p>");
-        sb.append("<a>City: " + result.getString("city") + "</a><br/>");
+        sb.append("<a>City: " + hotel.getCity() + "</a><br/>");
         sb.append("<a onclick=\"thisGoogleMap()\" data-toggle=\"modal\" data-target=\"#addressModal\">");
-        sb.append("Address: <span class=\"clickableA\">" + result.getString("address") + "</span></a><br/>");
-        sb.append("<a>Phone: " + expediaInfo.getString("phone") + "</a><br/>");
+        sb.append("Address: <span class=\"clickableA\">" + hotel.getAddress() + "</span></a><br/>");
+        sb.append("<a>Phone: " + phone + "</a><br/>");
         sb.append("<a>Rating: " + starts(rating) + " " + (rating == 0 ? "null" : "" + rating) + " / 5.0</a>");
         sb.append("<hr>");
 
@@ -135,7 +134,7 @@ public class HotelDetailServlet extends BaseServlet {
 
         // expedia button
         sb.append("<button id=\"btnExpedia\" class=\"button btn-info clickable\" onClick=\"window.open('" + expediaLink + "');");
-        sb.append((expediaStatus == 1 ? "" : "like('expedia', '" + hotelId + "');") + "\">");
+        sb.append((hotel.isExpediaChecked() ? "" : "like('expedia', '" + hotelId + "');") + "\">");
         sb.append("<i class=\"fa fa-external-link\" aria-hidden=\"true\"></i> Expedia</button> ");
 
         // add review button
@@ -144,8 +143,8 @@ public class HotelDetailServlet extends BaseServlet {
         sb.append("onclick=\"reviewmodal('Add')\"><i class=\"fa fa-pencil\" aria-hidden=\"true\"></i> AddReview</button>");
 
         // data for google map
-        sb.append("<input type=\"hidden\" id=\"gmdata\" lat=\"" + result.getString("latitude") + "\" ");
-        sb.append("lon=\"" + result.getString("longitude") + "\">");
+        sb.append("<input type=\"hidden\" id=\"gmdata\" lat=\"" + hotel.getLatitude() + "\" ");
+        sb.append("lon=\"" + hotel.getLongitude() + "\">");
         sb.append("</div>");
         return sb.toString();
     }
@@ -180,7 +179,7 @@ public class HotelDetailServlet extends BaseServlet {
      * @throws SQLException
      */
     private String reviewBody(String type, String username, ResultSet result) throws SQLException {
-        int likes = dbhandler.getLikes(result.getString("reviewid"));
+        int likes = result.getInt("likes");
 
         StringBuilder sb = new StringBuilder();
         sb.append("<div class=\"card-body\">");
@@ -1,14 +1,17 @@
 package servlet;
 
 import data.DataSession;
+import data.DatabaseHandler;
+import data.HotelRepository;
+import hotelapp.Hotel;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * HotelServlet class to present Hotels page in hotelApp.
@@ -58,37 +61,38 @@ public class HotelServlet extends BaseServlet {
             DataSession ds = (DataSession) session.getAttribute(NAME);
             setDataSession(request, ds);
 
-            // displaying the result from database
-            try (ResultSet result = dbhandler.getHotels(ds)) {
-                int count = 0;
-                int ShowEntries = Integer.parseInt(ds.getElement(NAME + "ShowEntries"));
-                int Page = Integer.parseInt(ds.getElement(NAME + "Page"));
-                int min = ShowEntries * (Page - 1) + 1, max = ShowEntries * Page;
+            int ShowEntries = Integer.parseInt(ds.getElement(NAME + "ShowEntries"));
+            int Page = Integer.parseInt(ds.getElement(NAME + "Page"));
+
+            // displaying one page of the result
+            try {
+                HotelRepository repository = dbhandler.getRepository();
+                List<Hotel> hotels = repository.getHotels(ds, Page, ShowEntries);
+                int total = repository.countHotels(ds);
+                int count = DatabaseHandler.getOffset(Page, ShowEntries);
 
                 tableHead(sb, ds, NAME);
 
                 sb.append("<tbody>");
-                while (result.next()) {
+                for (Hotel hotel : hotels) {
                     count++;
-                    if (count >= min && count <= max) {
-                        sb.append("<tr ");
-                        sb.append("onclick=\"detail('" + NAME + "', '" + result.getString(ds.getElement("column0")) + "');");
-                        sb.append("scrollDownAnimation();\">");
-                        sb.append("<td>").append(count).append("</td>");
-                        sb.append("<td id=\"h" + result.getString(ds.getElement("column0")) + "\" name=\"hotels\" ");
-                        sb.append("lat=\"" + result.getString("latitude") + "\" ");
-                        sb.append("lon=\"" + result.getString("longitude") + "\" no=\"" + count + "\">");
-                        sb.append(result.getString(ds.getElement("column1"))).append("</td>");
-                        sb.append("<td>").append(result.getString(ds.getElement("column2"))).append("</td>");
-                        sb.append("<td>").append(starts(result.getDouble(ds.getElement("column3")))).append("</td>");
-                        sb.append("</tr>");
-                    }
+                    sb.append("<tr ");
+                    sb.append("onclick=\"detail('" + NAME + "', '" + hotel.getHotelId() + "');");
+                    sb.append("scrollDownAnimation();\">");
+                    sb.append("<td>").append(count).append("</td>");
+                    sb.append("<td id=\"h" + hotel.getHotelId() + "\" name=\"hotels\" ");
+                    sb.append("lat=\"" + hotel.getAddress().getLatitude() + "\" ");
+                    sb.append("lon=\"" + hotel.getAddress().getLongitude() + "\" no=\"" + count + "\">");
+                    sb.append(hotel.getHotelName()).append("</td>");
+                    sb.append("<td>").append(hotel.getAddress().getCity()).append("</td>");
+                    sb.append("<td>").append(starts(hotel.getAverageRating())).append("</td>");
+                    sb.append("</tr>");
                 }
-                if (count == 0) {
+                if (total == 0) {
                     sb.append("<td colspan=\"4\" align=\"center\">No result.</td>");
                 }
                 sb.append("</tbody>");
-                ds.setElement(NAME + "Count", "" + count);
+                ds.setElement(NAME + "Count", "" + total);
 
                 out.println(sb.toString());
             } catch (SQLException e) {
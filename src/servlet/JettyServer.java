@@ -43,6 +43,7 @@ public class JettyServer {
         servhandler.addServlet(AttractionServlet.class, "/attraction");
         servhandler.addServlet(MyPageServlet.class, "/mypage");
         servhandler.addServlet(ClearServlet.class, "/clear");
+        servhandler.addServlet(StatsServlet.class, "/stats");
         server.setHandler(servhandler);
 
         ServletHolder holderPwd = new ServletHolder("default", DefaultServlet.class);
@@ -16,6 +16,7 @@ public class LikeServlet extends BaseServlet {
 
     /**
      * doPost method to handle operations: like review, save hotel, check Expedia link.
+     * Responds with the new state, 1 if liked, saved or checked and 0 if not.
      *
      * @param request
      * @param response
@@ -1,12 +1,13 @@
 package servlet;
 
+import data.MyDataPage;
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.json.simple.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +18,7 @@ import java.util.Map;
 public class MyPageServlet extends BaseServlet {
 
     private static final String NAME = "mypage";
+    private static final int PAGE_SIZE = 5;
 
     /**
      * doGet method to load mypage.html template and display user's MyPage.
@@ -37,80 +39,101 @@ public class MyPageServlet extends BaseServlet {
             // load template
             out.println(getTemplate(request, NAME));
             navBar(request, response, NAME);
-            out.println("<script> getLoginInformation(); </script>");
-            out.println("<script> addResult('myReviews'); </script>");
-            out.println("<script> addResult('favoriteHotels'); </script>");
-            out.println("<script> addResult('likedReviews'); </script>");
-            out.println("<script> addResult('expediaLinks'); </script>");
+            out.println("<script> loadMyPage(); </script>");
         }
     }
 
     /**
      * doPost method to display user's data in MyPage, five rows of data per request.
+     * With type "all", returns the first rows of every list and the login information as JSON, keyed by the
+     * element id they belong to.
      *
      * @param request
      * @param response
      * @throws IOException
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Map<String, List<String>> types = getTypesMap();
         String type = StringEscapeUtils.escapeHtml4(request.getParameter("type"));
-        int finish = Integer.parseInt(request.getParameter("finish"));
         String username = getUsername(request);
+        PrintWriter out = response.getWriter();
 
-        if (username != null && types.containsKey(type) && finish == 0) {
-            try (ResultSet result = dbhandler.getMyData(types.get(type), username)) {
-                StringBuilder sb = new StringBuilder();
-                PrintWriter out = response.getWriter();
-                int data = Integer.parseInt(request.getParameter("data"));
-                int count = 0, display = 0;
-
-                while (result.next()) {
-                    count++;
-                    if (count > data && display < 5) {
-                        display++;
-                        sb.append("<tr><td name=\"" + type + "Data\" onclick=\"" + getFunction(type, result) + "\">");
-                        sb.append(result.getString(types.get(type).get(3)));
-                        sb.append("</td></tr>");
-                    }
-                }
+        if (username == null) {
+            return;
+        }
 
-                if (count == 0) {
-                    sb.append("<tr><td name=\"" + type + "Finish\">No result.</td></tr>");
-                }
-                else if (count == data + display) {
-                    sb.append("<tr hidden><td name=\"" + type + "Finish\"></td></tr>");
+        try {
+            if ("all".equals(type)) {
+                JSONObject json = new JSONObject();
+                json.put("loginInformation", loginInformation(username));
+                for (String name : types.keySet()) {
+                    json.put(name, rows(name, types.get(name), username, 0));
                 }
 
-                out.println(sb.toString());
+                response.setContentType("application/json");
+                out.println(json.toJSONString());
             }
-            catch (SQLException e) {
-                System.out.println(e);
+            else if (types.containsKey(type) && Integer.parseInt(request.getParameter("finish")) == 0) {
+                int data = Integer.parseInt(request.getParameter("data"));
+                out.println(rows(type, types.get(type), username, data));
             }
         }
+        catch (SQLException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Construct the html query of the next rows of a list in MyPage.
+     *
+     * @param name - list name, e.g. myReviews
+     * @param type - tables and columns of the list
+     * @param username
+     * @param data - number of rows already displayed
+     * @return String - Html query of the rows
+     * @throws SQLException
+     */
+    private String rows(String name, List<String> type, String username, int data) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        MyDataPage page = dbhandler.getMyData(type, username, data, PAGE_SIZE);
+
+        for (MyDataPage.Item item : page.getItems()) {
+            sb.append("<tr><td name=\"" + name + "Data\" onclick=\"" + getFunction(name, item) + "\">");
+            sb.append(item.getLabel());
+            sb.append("</td></tr>");
+        }
+
+        if (data == 0 && page.getItems().isEmpty()) {
+            sb.append("<tr><td name=\"" + name + "Finish\">No result.</td></tr>");
+        }
+        else if (!page.hasMore()) {
+            sb.append("<tr hidden><td name=\"" + name + "Finish\"></td></tr>");
+        }
+
+        return sb.toString();
     }
 
     /**
      * Return the function of onclick operations of each user's data.
      *
      * @param type
-     * @param result
+     * @param item
      * @return String - button function
-     * @throws SQLException
      */
-    private String getFunction(String type, ResultSet result) throws SQLException {
+    private String getFunction(String type, MyDataPage.Item item) {
         String function = "";
 
         if (type.equals("favoriteHotels")) {
-            function = "detail('hotel', '" + result.getString("main.hotelid") + "');"
+            function = "detail('hotel', '" + item.getId() + "');"
                     + "scrollDownAnimation();";
         }
         else if (type.equals("expediaLinks")) {
-            function = "window.open('" + result.getString("main.link") + "');";
+            function = "window.open('" + item.getLink() + "');";
         }
         else if (type.endsWith("Reviews")) {
-            function = "detail('review', '" + result.getString("main.reviewid") + "');"
+            function = "detail('review', '" + item.getId() + "');"
                     + "scrollDownAnimation();";
         }
 
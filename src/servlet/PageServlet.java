@@ -7,7 +7,6 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -27,37 +26,14 @@ public class PageServlet extends BaseServlet {
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String username = getUsername(request);
-        StringBuilder sb = new StringBuilder();
         PrintWriter out = response.getWriter();
 
         if (username == null) {
             response.sendRedirect(response.encodeRedirectURL("/index"));
         }
         else {
-            try (ResultSet result = dbhandler.getLogins(username)) {
-                int count = 0;
-                while (result.next()) {
-                    count++;
-                    if (count == 2) {
-                        sb.append("<div class=\"col-lg-6\">");
-                        sb.append("<i class=\"fa fa-clock-o\" aria-hidden=\"true\"></i> Last Login Time: ");
-                        sb.append(result.getTimestamp("date"));
-                        sb.append("</div>");
-                        sb.append("<div class=\"col-lg-6\">");
-                        sb.append("<i class=\"fa fa-compass\" aria-hidden=\"true\"></i> IP Address: ");
-                        sb.append(result.getString("ipaddress"));
-                        sb.append("</div>");
-                    }
-                }
-
-                if (count < 2) {
-                    sb.append("<div class=\"col-lg-12\">");
-                    sb.append("<i class=\"fa fa-hand-spock-o\" aria-hidden=\"true\"></i> ");
-                    sb.append("This is your first time to login! Huzzah!");
-                    sb.append("</div>");
-                }
-
-                out.println(sb.toString());
+            try {
+                out.println(loginInformation(username));
             }
             catch (SQLException e) {
                 System.out.println(e);
@@ -57,19 +57,20 @@ public class ReviewModalServlet extends BaseServlet {
         String reviewRecommend1 = "checked";
         String reviewRecommend0 = "";
         String reviewContent = "";
-        ResultSet result = getResult(id, type);
 
-        if (result != null && result.next()) {
-            hotelName = result.getString("hotelname");
-
-            if (type.equals("Edit")) {
-                reviewTitle = result.getString("title");
-                reviewRating = result.getInt("rating");
-                if (result.getInt("recommend") == 0){
-                    reviewRecommend1 = "";
-                    reviewRecommend0 = "checked";
+        try (ResultSet result = getResult(id, type)) {
+            if (result != null && result.next()) {
+                hotelName = result.getString("hotelname");
+
+                if (type.equals("Edit")) {
+                    reviewTitle = result.getString("title");
+                    reviewRating = result.getInt("rating");
+                    if (result.getInt("recommend") == 0){
+                        reviewRecommend1 = "";
+                        reviewRecommend0 = "checked";
+                    }
+                    reviewContent = result.getString("review");
                 }
-                reviewContent = result.getString("review");
             }
         }
 
@@ -1,14 +1,18 @@
 package servlet;
 
 import data.DataSession;
+import data.DatabaseHandler;
+import data.HotelRepository;
+import hotelapp.Review;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
 
 /**
  * ReviewServlet class to display reviews in Hotels page.
@@ -35,37 +39,38 @@ public class ReviewServlet extends BaseServlet {
             DataSession ds = (DataSession) session.getAttribute(NAME);
             setDataSession(request, ds);
 
-            // displaying the result from database
-            try (ResultSet result = dbhandler.getReviews(ds)) {
-                int count = 0;
-                int ShowEntries = Integer.parseInt(ds.getElement(NAME + "ShowEntries"));
-                int Page = Integer.parseInt(ds.getElement(NAME + "Page"));
-                int min = ShowEntries * (Page - 1) + 1, max = ShowEntries * Page;
+            int ShowEntries = Integer.parseInt(ds.getElement(NAME + "ShowEntries"));
+            int Page = Integer.parseInt(ds.getElement(NAME + "Page"));
+
+            // displaying one page of the result
+            try {
+                HotelRepository repository = dbhandler.getRepository();
+                List<Review> reviews = repository.getReviews(ds, Page, ShowEntries);
+                int total = repository.countReviews(ds);
+                int count = DatabaseHandler.getOffset(Page, ShowEntries);
 
                 tableHead(sb, ds, NAME);
 
                 sb.append("<tbody>");
-                while (result.next()) {
+                for (Review review : reviews) {
                     count++;
-                    if (count >= min && count <= max) {
-                        sb.append("<tr ");
-                        sb.append("onclick=\"detail('" + NAME + "', '" + result.getString(ds.getElement("column0")) + "');");
-                        sb.append("scrollDownAnimation();\">");
-                        sb.append("<td>").append(count).append("</td>");
-                        sb.append("<td>").append(result.getString(ds.getElement("column1"))).append("</td>");
-                        sb.append("<td>").append(result.getString(ds.getElement("column2"))).append("</td>");
-                        sb.append("<td>").append(starts(result.getDouble(ds.getElement("column3")))).append("</td>");
-                        sb.append("<td>").append(result.getTimestamp(ds.getElement("column4"))).append("</td>");
-                        sb.append("</tr>");
-                    }
+                    sb.append("<tr ");
+                    sb.append("onclick=\"detail('" + NAME + "', '" + review.getReviewId() + "');");
+                    sb.append("scrollDownAnimation();\">");
+                    sb.append("<td>").append(count).append("</td>");
+                    sb.append("<td>").append(review.getUsername()).append("</td>");
+                    sb.append("<td>").append(review.getReviewTitle()).append("</td>");
+                    sb.append("<td>").append(starts(review.getRating())).append("</td>");
+                    sb.append("<td>").append(new Timestamp(review.getTime())).append("</td>");
+                    sb.append("</tr>");
                 }
-                if (count == 0) {
+                if (total == 0) {
                     sb.append("<td colspan=\"5\" align=\"center\">");
                     sb.append(ds.getElement("hotelid").equals("") ? dataTableErrors[0] : dataTableErrors[1]);
                     sb.append("</td>");
                 }
                 sb.append("</tbody>");
-                ds.setElement(NAME + "Count", "" + count);
+                ds.setElement(NAME + "Count", "" + total);
 
                 out.println(sb.toString());
             }
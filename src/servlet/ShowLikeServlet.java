@@ -49,12 +49,13 @@ public class ShowLikeServlet extends BaseServlet {
      */
     private String showReviewLikes(String reviewId) throws SQLException {
         StringBuilder sb = new StringBuilder();
-        ResultSet result = dbhandler.showReviewLikes(reviewId);
 
-        while (result.next()) {
-            sb.append("<span class=\"badge badge-warning\" ");
-            sb.append("title=\"").append(result.getTimestamp("date")).append("\">");
-            sb.append(result.getString("username")).append("</span> ");
+        try (ResultSet result = dbhandler.showReviewLikes(reviewId)) {
+            while (result.next()) {
+                sb.append("<span class=\"badge badge-warning\" ");
+                sb.append("title=\"").append(result.getTimestamp("date")).append("\">");
+                sb.append(result.getString("username")).append("</span> ");
+            }
         }
 
         if (sb.length() == 0) {
@@ -0,0 +1,33 @@
+package servlet;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+
+/**
+ * StatsServlet class.
+ */
+public class StatsServlet extends BaseServlet {
+
+    /**
+     * doGet method to display query statistics, connection pool usage and login buffer state as JSON.
+     * Only answers requests from the server itself.
+     *
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress()) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        response.setContentType("application/json");
+        PrintWriter out = response.getWriter();
+        out.println(dbhandler.getStats().toJSONString());
+    }
+}